@@ -12,6 +12,7 @@ import com.digitalfactory.bookstore.service.enums.UserType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
@@ -20,11 +21,18 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.Arrays;
 
+/**
+ * A handful of demo categories, books, users and transactions, only with {@code --spring.profiles.active=demo}. For
+ * capacity testing see {@link com.digitalfactory.bookstore.seed.SyntheticDataGenerator}.
+ */
 @Component
+@Profile(DataInitializer.PROFILE)
 @Slf4j
 @RequiredArgsConstructor
 public class DataInitializer implements CommandLineRunner {
 
+    public static final String PROFILE = "demo";
+
     private final UserRepository users;
     
     private final PasswordEncoder passwordEncoder;
@@ -98,7 +106,7 @@ public class DataInitializer implements CommandLineRunner {
         );
         
         log.debug("printing all users...");
-        this.users.findAll().forEach(v -> log.debug(" User :" + v.toString()));
+        this.users.findAll().forEach(v -> log.debug(" User :{}", v.getUsername()));
 
 
         log.debug("initializing transaction data...");
@@ -2,9 +2,11 @@ package com.digitalfactory.bookstore;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
-@SpringBootApplication
+// R2DBC is for the read node only, this application reads and writes through JPA
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @ConfigurationPropertiesScan
 public class DemoApplication {
     
@@ -0,0 +1,33 @@
+package com.digitalfactory.bookstore.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Gives the second-level cache a cache manager of its own. The provider's default one is shared by the whole JVM, so
+ * two application contexts side by side, as in the tests, would serve each other's rows.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager() {
+        // neither a file nor a resource, so the regions are still configured from application.conf
+        URI uri = URI.create("bookstore:" + UUID.randomUUID());
+        return Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(uri, CacheConfig.class.getClassLoader());
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer secondLevelCache(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
@@ -0,0 +1,19 @@
+package com.digitalfactory.bookstore.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "execution")
+@Data
+public class ExecutionProperties {
+
+    // threads serving requests, async work and the application's background tasks
+    private Mode mode = Mode.PLATFORM;
+
+    public enum Mode {
+        // pooled platform threads, Tomcat's thread pool limits concurrent requests
+        PLATFORM,
+        // a virtual thread per task, needs Java 21; the connection pool limits concurrent database work
+        VIRTUAL
+    }
+}
@@ -0,0 +1,53 @@
+package com.digitalfactory.bookstore.config;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hands out the threads of the configured {@link ExecutionProperties.Mode}, so background work started by the
+ * application itself follows the same mode as request handling.
+ */
+@Component
+public class ExecutionThreads {
+
+    private final boolean virtual;
+
+    public ExecutionThreads(ExecutionProperties executionProperties) {
+        this.virtual = executionProperties.getMode() == ExecutionProperties.Mode.VIRTUAL;
+        if (virtual) {
+            // fail on startup rather than on the first request
+            virtualThreadFactory("probe-");
+        }
+    }
+
+    /**
+     * @return whether tasks run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * A factory of threads named with the prefix and a counter.
+     *
+     * @param prefix the thread name prefix.
+     * @return the factory.
+     */
+    public ThreadFactory threadFactory(String prefix) {
+        return virtual ? virtualThreadFactory(prefix) : new CustomizableThreadFactory(prefix);
+    }
+
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory(), looked up so the build still targets Java 17
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("execution.mode=virtual needs Java 21 or later", e);
+        }
+    }
+}
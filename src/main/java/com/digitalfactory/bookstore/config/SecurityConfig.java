@@ -1,8 +1,8 @@
 package com.digitalfactory.bookstore.config;
 
-import com.digitalfactory.bookstore.repository.UserRepository;
 import com.digitalfactory.bookstore.security.JwtTokenAuthenticationFilter;
 import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import com.digitalfactory.bookstore.service.UserService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -15,6 +15,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -35,6 +36,8 @@ public class SecurityConfig {
                 .exceptionHandling(c -> c.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/auth/login").permitAll()
+                        // scraped without a token, on management.server.port only; the public port does not serve them
+                        .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers(HttpMethod.GET, "/v1/**").authenticated()
                         .requestMatchers(HttpMethod.POST, "/v1/api/customer/**").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/v1/api/**").hasRole("ADMIN")
@@ -48,13 +51,20 @@ public class SecurityConfig {
     }
 
     @Bean
-    UserDetailsService customUserDetailsService(UserRepository users) {
-        return (username) -> users.findByUsername(username)
+    UserDetailsService customUserDetailsService(UserService users) {
+        return (username) -> users.findOneByUserName(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Username: " + username + " not found"));
     }
 
     @Bean
-    AuthenticationManager customAuthenticationManager(UserDetailsService userDetailsService, PasswordEncoder encoder) {
+    UserDetailsPasswordService customUserDetailsPasswordService(UserService users) {
+        return (user, newPassword) -> users.updatePassword(user.getUsername(), newPassword);
+    }
+
+    @Bean
+    AuthenticationManager customAuthenticationManager(UserDetailsService userDetailsService,
+                                                      UserDetailsPasswordService userDetailsPasswordService,
+                                                      PasswordEncoder encoder) {
         return authentication -> {
             String username = authentication.getPrincipal() + "";
             String password = authentication.getCredentials() + "";
@@ -69,6 +79,11 @@ public class SecurityConfig {
                 throw new DisabledException("User account is not active");
             }
 
+            // the password is at hand only now, rehash it while the stored hash uses an outdated cost or algorithm
+            if (encoder.upgradeEncoding(user.getPassword())) {
+                user = userDetailsPasswordService.updatePassword(user, encoder.encode(password));
+            }
+
             return new UsernamePasswordAuthenticationToken(username, null, user.getAuthorities());
         };
     }
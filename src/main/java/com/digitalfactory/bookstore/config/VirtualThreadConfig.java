@@ -0,0 +1,34 @@
+package com.digitalfactory.bookstore.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+/**
+ * Runs Tomcat request handling and async work, {@code @Async} methods and streaming responses, on a virtual thread
+ * per task. Nothing caps the number of requests in flight any more; the Hikari pool bounds the concurrent database
+ * work and its connection timeout how long a request waits for it.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "execution", name = "mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler(ExecutionThreads executionThreads) {
+        return protocolHandler -> protocolHandler.setExecutor(new SimpleAsyncTaskExecutor(executionThreads.threadFactory("http-")));
+    }
+
+    @Bean(name = {
+            TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+    })
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutionThreads executionThreads) {
+        return new SimpleAsyncTaskExecutor(executionThreads.threadFactory("task-"));
+    }
+}
@@ -3,13 +3,18 @@ package com.digitalfactory.bookstore.domain;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "book")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_category_amount", columnList = "book_category_id, amount")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -35,6 +40,9 @@ public class Book implements Serializable {
     @NotNull
     private BigDecimal amount;
 
+    @Version
+    private Long version;
+
     /**
      * To Check id of object equals to current object or instance of it
      *
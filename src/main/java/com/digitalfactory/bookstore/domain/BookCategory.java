@@ -3,11 +3,14 @@ package com.digitalfactory.bookstore.domain;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 
 @Entity
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "book_category")
 @Data
 @Builder
@@ -24,6 +27,9 @@ public class BookCategory implements Serializable {
     @NotNull
     private String name;
 
+    @Version
+    private Long version;
+
     /**
      * To Check id of object equals to current object or instance of it
      *
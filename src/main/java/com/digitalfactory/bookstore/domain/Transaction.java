@@ -1,6 +1,7 @@
 package com.digitalfactory.bookstore.domain;
 
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,7 +10,10 @@ import java.io.Serializable;
 import java.sql.Timestamp;
 
 @Entity
-@Table(name = "transaction")
+@Table(name = "transaction", indexes = {
+        @Index(name = "idx_transaction_trx_date_id", columnList = "trx_date, id"),
+        @Index(name = "idx_transaction_journal_sequence", columnList = "journal_sequence")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,11 +26,11 @@ public class Transaction implements Serializable {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private User user;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private Book book;
 
@@ -35,6 +39,11 @@ public class Transaction implements Serializable {
     private Timestamp trx_date;
 
     private Timestamp received_date;
+
+    // position in the inventory journal of the entry this row was written from, write-behind mode only
+    @JsonIgnore
+    private Long journal_sequence;
+
     /**
      * To Check id of object equals to current object or instance of it
      *
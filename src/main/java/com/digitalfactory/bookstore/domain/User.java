@@ -51,7 +51,7 @@ public class User implements UserDetails {
     @NotNull
     private String address;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection
     @Builder.Default
     private List<String> roles = new ArrayList<>();
 
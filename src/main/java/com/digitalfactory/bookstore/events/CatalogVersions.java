@@ -0,0 +1,56 @@
+package com.digitalfactory.bookstore.events;
+
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the books and of the categories, the entity tags of the polled lists.
+ * <p>
+ * By default they are counted in memory so they cost nothing to read. Every write path bumps them once its
+ * transaction has completed: the services, the import and the inventory journal. Bumped any earlier, a reader could
+ * pair the new version with the old rows and keep them for good. The versions start from the startup time, so tags
+ * handed out before a restart never match again. Changes made outside this instance are not seen, so with more than
+ * one instance on the same database set {@code catalog-versions.source=database}: the versions are then aggregated
+ * from the tables on every read.
+ */
+@Component
+public class CatalogVersions {
+
+    private final long epoch = System.currentTimeMillis();
+
+    private final AtomicLong books = new AtomicLong();
+
+    private final AtomicLong categories = new AtomicLong();
+
+    private final boolean shared;
+
+    private final BookRepository bookRepository;
+
+    private final BookCategoryRepository bookCategoryRepository;
+
+    public CatalogVersions(CatalogVersionsProperties catalogVersionsProperties, BookRepository bookRepository,
+                           BookCategoryRepository bookCategoryRepository) {
+        this.shared = catalogVersionsProperties.getSource() == CatalogVersionsProperties.Source.DATABASE;
+        this.bookRepository = bookRepository;
+        this.bookCategoryRepository = bookCategoryRepository;
+    }
+
+    public String books() {
+        return shared ? bookRepository.findCatalogVersion() : epoch + "-" + books.get();
+    }
+
+    public String categories() {
+        return shared ? bookCategoryRepository.findCatalogVersion() : epoch + "-" + categories.get();
+    }
+
+    public void booksChanged() {
+        books.incrementAndGet();
+    }
+
+    public void categoriesChanged() {
+        categories.incrementAndGet();
+    }
+}
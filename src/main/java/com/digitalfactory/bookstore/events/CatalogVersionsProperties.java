@@ -0,0 +1,19 @@
+package com.digitalfactory.bookstore.events;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "catalog-versions")
+@Data
+public class CatalogVersionsProperties {
+
+    // where the entity tags of the book and category lists come from
+    private Source source = Source.MEMORY;
+
+    public enum Source {
+        // counters of this instance, free to read; only right while it is the only one writing to the database
+        MEMORY,
+        // aggregated from the tables on every read, so instances sharing the database agree
+        DATABASE
+    }
+}
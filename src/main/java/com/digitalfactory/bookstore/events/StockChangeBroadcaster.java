@@ -0,0 +1,349 @@
+package com.digitalfactory.bookstore.events;
+
+import com.digitalfactory.bookstore.config.ExecutionThreads;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.service.dto.StockChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes availability changes to server-sent event subscribers, so kiosks stop polling the available books.
+ * <p>
+ * Writers only mark books as changed. Every coalesce interval the marked books are read in one query, however often
+ * they changed meanwhile, and offered to the subscribers whose category filter matches. Each subscriber keeps at most
+ * one pending event per book; when too many books pile up for it, it gets a single {@code resync} event telling it to
+ * reload instead. Idle subscribers hold no thread and cost nothing but a heartbeat.
+ * <p>
+ * Subscribers with something to send wait in a bounded queue for a fixed pool of senders, each one queued at most once
+ * however much piles up for it. When the queue is full the subscriber is dropped and its stream ended, the client
+ * reconnects and resyncs. A write blocks its sender until the client takes the data; a subscriber whose write takes
+ * longer than the send timeout is dropped as well, offered nothing more and its stream ended once the write returns,
+ * at the latest when the server's own write timeout fails it. Until then it holds its sender, so the pool should be
+ * larger than the number of clients expected to stall at once.
+ */
+@Component
+@Slf4j
+public class StockChangeBroadcaster {
+
+    static final String STOCK_EVENT = "stock";
+
+    static final String RESYNC_EVENT = "resync";
+
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    private final StockEventsProperties stockEventsProperties;
+
+    private final BookRepository bookRepository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ObjectWriter writer;
+
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService dispatcher;
+
+    private final ThreadPoolExecutor senders;
+
+    public StockChangeBroadcaster(StockEventsProperties stockEventsProperties, BookRepository bookRepository,
+                                  PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                                  ExecutionThreads executionThreads) {
+        this.stockEventsProperties = stockEventsProperties;
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // every event must fit on one data line
+        this.writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(executionThreads.threadFactory("stock-events-"));
+        this.senders = new ThreadPoolExecutor(stockEventsProperties.getSenderThreads(), stockEventsProperties.getSenderThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(stockEventsProperties.getSenderQueueCapacity()),
+                executionThreads.threadFactory("stock-events-sender-"));
+        long coalesce = stockEventsProperties.getCoalesceInterval().toMillis();
+        long heartbeat = stockEventsProperties.getHeartbeatInterval().toMillis();
+        this.dispatcher.scheduleWithFixedDelay(this::dispatch, coalesce, coalesce, TimeUnit.MILLISECONDS);
+        this.dispatcher.scheduleWithFixedDelay(this::dropStalled, coalesce, coalesce, TimeUnit.MILLISECONDS);
+        this.dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open a stream of availability changes.
+     *
+     * @param categoryId only books of this category, or all books when null.
+     * @return the emitter of the stream.
+     */
+    public SseEmitter subscribe(Long categoryId) {
+        return subscribe(categoryId, new SseEmitter(stockEventsProperties.getStreamTimeout().toMillis()));
+    }
+
+    SseEmitter subscribe(Long categoryId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(categoryId, emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // ends the stream normally, the client reconnects
+        emitter.onTimeout(emitter::complete);
+        subscribers.add(subscriber);
+        // headers go out with the first write, so the client sees the stream open before the first change
+        if (subscriber.offerHeartbeat()) {
+            startDrain(subscriber);
+        }
+        return emitter;
+    }
+
+    /**
+     * Mark books whose availability may have changed, once the change is committed.
+     *
+     * @param bookIds the books.
+     */
+    public void changed(Collection<Long> bookIds) {
+        changed.addAll(bookIds);
+    }
+
+    /**
+     * @return the number of open streams.
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private void dispatch() {
+        try {
+            if (changed.isEmpty()) {
+                return;
+            }
+            List<Long> ids = new ArrayList<>();
+            // a book marked again after its removal here stays for the next round
+            for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext(); ) {
+                ids.add(iterator.next());
+                iterator.remove();
+            }
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            Collection<StockChange> changes = load(ids);
+            for (Subscriber subscriber : subscribers) {
+                List<StockChange> matching = changes.stream().filter(subscriber::accepts).collect(Collectors.toList());
+                if (!matching.isEmpty() && subscriber.offer(matching, stockEventsProperties.getMaxPendingPerSubscriber())) {
+                    startDrain(subscriber);
+                }
+            }
+        } catch (RuntimeException e) {
+            // a scheduled task that throws is never run again
+            log.warn("Could not dispatch stock changes", e);
+        }
+    }
+
+    private Collection<StockChange> load(List<Long> ids) {
+        Map<Long, StockChange> changes = new LinkedHashMap<>();
+        // deleted books are not found and keep this
+        ids.forEach(id -> changes.put(id, new StockChange(id, null, BigDecimal.ZERO)));
+        readOnlyTransaction.executeWithoutResult(status -> {
+            for (int from = 0; from < ids.size(); from += QUERY_CHUNK_SIZE) {
+                bookRepository.findStockByIdIn(ids.subList(from, Math.min(from + QUERY_CHUNK_SIZE, ids.size())))
+                        .forEach(change -> changes.put(change.getBookId(), change));
+            }
+        });
+        return changes.values();
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.offerHeartbeat()) {
+                startDrain(subscriber);
+            }
+        }
+    }
+
+    private void startDrain(Subscriber subscriber) {
+        try {
+            senders.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // not being written to, so ending the stream cannot block here
+            subscribers.remove(subscriber);
+            subscriber.drop();
+            subscriber.emitter.complete();
+            log.debug("Dropped a stock event subscriber, {} others are waiting for a sender", senders.getQueue().size());
+        }
+    }
+
+    private void dropStalled() {
+        long now = System.nanoTime();
+        long timeout = stockEventsProperties.getSendTimeout().toNanos();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != Subscriber.NOT_SENDING && now - since > timeout) {
+                // the emitter is locked by the stalled write, the sender ends the stream once it returns
+                subscribers.remove(subscriber);
+                subscriber.drop();
+                log.debug("Dropped a stock event subscriber stalled for {} ms", TimeUnit.NANOSECONDS.toMillis(now - since));
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Outgoing outgoing;
+            while ((outgoing = subscriber.next()) != null) {
+                if (outgoing.resync()) {
+                    send(subscriber, SseEmitter.event().name(RESYNC_EVENT).data("{}"));
+                } else if (outgoing.changes().isEmpty()) {
+                    send(subscriber, SseEmitter.event().comment("heartbeat"));
+                }
+                for (StockChange change : outgoing.changes()) {
+                    send(subscriber, SseEmitter.event()
+                            .name(STOCK_EVENT)
+                            .id(change.getBookId().toString())
+                            .data(writer.writeValueAsString(change)));
+                }
+            }
+            if (subscriber.isDropped()) {
+                subscriber.emitter.completeWithError(new TimeoutException("Stock event subscriber too slow"));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        subscriber.sendingSince = System.nanoTime();
+        try {
+            subscriber.emitter.send(event);
+        } finally {
+            subscriber.sendingSince = Subscriber.NOT_SENDING;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private record Outgoing(boolean resync, List<StockChange> changes) {
+    }
+
+    private static final class Subscriber {
+
+        static final long NOT_SENDING = Long.MIN_VALUE;
+
+        private final Long categoryId;
+
+        private final SseEmitter emitter;
+
+        // latest change per book, in the order books first changed
+        private final Map<Long, StockChange> pending = new LinkedHashMap<>();
+
+        private boolean resync;
+
+        private boolean heartbeat;
+
+        private boolean sending;
+
+        private boolean dropped;
+
+        // when the write in progress started, read by the watchdog without taking the lock
+        private volatile long sendingSince = NOT_SENDING;
+
+        Subscriber(Long categoryId, SseEmitter emitter) {
+            this.categoryId = categoryId;
+            this.emitter = emitter;
+        }
+
+        boolean accepts(StockChange change) {
+            return categoryId == null || change.getCategoryId() == null || categoryId.equals(change.getCategoryId());
+        }
+
+        /**
+         * @return whether a sender has to be started for this subscriber.
+         */
+        synchronized boolean offer(List<StockChange> changes, int maxPending) {
+            if (!resync) {
+                changes.forEach(change -> pending.put(change.getBookId(), change));
+                if (pending.size() > maxPending) {
+                    pending.clear();
+                    resync = true;
+                }
+            }
+            return startSending();
+        }
+
+        synchronized boolean offerHeartbeat() {
+            heartbeat = true;
+            return startSending();
+        }
+
+        private boolean startSending() {
+            if (sending || dropped) {
+                return false;
+            }
+            sending = true;
+            return true;
+        }
+
+        /**
+         * @return what to send next, or null when there is nothing left and the sender stops.
+         */
+        synchronized Outgoing next() {
+            if (dropped) {
+                sending = false;
+                return null;
+            }
+            if (resync) {
+                resync = false;
+                heartbeat = false;
+                return new Outgoing(true, List.of());
+            }
+            if (!pending.isEmpty()) {
+                List<StockChange> changes = new ArrayList<>(pending.values());
+                pending.clear();
+                heartbeat = false;
+                return new Outgoing(false, changes);
+            }
+            if (heartbeat) {
+                heartbeat = false;
+                return new Outgoing(false, List.of());
+            }
+            sending = false;
+            return null;
+        }
+
+        synchronized void drop() {
+            dropped = true;
+            pending.clear();
+        }
+
+        synchronized boolean isDropped() {
+            return dropped;
+        }
+    }
+}
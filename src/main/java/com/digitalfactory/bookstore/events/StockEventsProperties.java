@@ -0,0 +1,33 @@
+package com.digitalfactory.bookstore.events;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "stock-events")
+@Data
+public class StockEventsProperties {
+
+    // changes to the same book within this interval reach subscribers as one event
+    private Duration coalesceInterval = Duration.ofMillis(250);
+
+    // distinct books waiting for a slow subscriber, beyond that it is told to reload instead
+    private int maxPendingPerSubscriber = 1000;
+
+    // comment sent on idle streams, so dead connections are noticed and proxies keep them open
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+    // threads writing events, a stalled subscriber holds one of them until it is dropped and its write fails
+    private int senderThreads = 16;
+
+    // subscribers waiting for a sender, beyond that a subscriber is dropped and reconnects
+    private int senderQueueCapacity = 10000;
+
+    // a subscriber whose write takes longer is dropped
+    private Duration sendTimeout = Duration.ofSeconds(10);
+
+    // streams are closed after this long, clients reconnect
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+}
@@ -0,0 +1,98 @@
+package com.digitalfactory.bookstore.inventory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file of fixed size {@link JournalEntry} records, each followed by its CRC. A record torn by a crash
+ * fails its check on reading and ends the journal there; it was never acknowledged, since appends only return once
+ * the whole batch is forced to disk.
+ */
+public class InventoryJournal implements Closeable {
+
+    static final int RECORD_SIZE = Long.BYTES + 1 + 5 * Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+
+    public InventoryJournal(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Read the journal from the start, up to the end or the first damaged record.
+     *
+     * @return the entries, in the order they were appended.
+     */
+    public List<JournalEntry> read() throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32C crc = new CRC32C();
+        long position = 0;
+        while (true) {
+            record.clear();
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    return entries;
+                }
+            }
+            crc.reset();
+            crc.update(record.array(), 0, RECORD_SIZE - Integer.BYTES);
+            // checked before decoding, a torn record may hold any kind
+            if (record.getInt(RECORD_SIZE - Integer.BYTES) != (int) crc.getValue()) {
+                return entries;
+            }
+            record.flip();
+            entries.add(new JournalEntry(record.getLong(), JournalEntry.Kind.values()[record.get()],
+                    record.getLong(), record.getLong(), record.getLong(), record.getLong(), record.getLong()));
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Append the entries and force them to disk, so they survive a crash once this returns.
+     *
+     * @param entries the entries to append.
+     */
+    public void append(List<JournalEntry> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * RECORD_SIZE);
+        CRC32C crc = new CRC32C();
+        for (JournalEntry entry : entries) {
+            int start = buffer.position();
+            buffer.putLong(entry.sequence())
+                    .put((byte) entry.kind().ordinal())
+                    .putLong(entry.bookId())
+                    .putLong(entry.userId())
+                    .putLong(entry.returnDate())
+                    .putLong(entry.trxDate())
+                    .putLong(entry.receivedDate());
+            crc.reset();
+            crc.update(buffer.array(), start, buffer.position() - start);
+            buffer.putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Drop every entry, once all of them are in the database.
+     */
+    public void truncate() throws IOException {
+        channel.truncate(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
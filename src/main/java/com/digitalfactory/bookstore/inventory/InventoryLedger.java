@@ -0,0 +1,544 @@
+package com.digitalfactory.bookstore.inventory;
+
+import com.digitalfactory.bookstore.config.ExecutionThreads;
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.domain.User;
+import com.digitalfactory.bookstore.events.CatalogVersions;
+import com.digitalfactory.bookstore.events.StockChangeBroadcaster;
+import com.digitalfactory.bookstore.repository.TransactionRepository;
+import com.digitalfactory.bookstore.search.BookAutocomplete;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import static com.digitalfactory.bookstore.inventory.JournalEntry.NO_DATE;
+import static com.digitalfactory.bookstore.inventory.JournalEntry.millis;
+import static com.digitalfactory.bookstore.inventory.JournalEntry.timestamp;
+
+/**
+ * Write-behind stock keeping for borrows and returns, enabled with {@code inventory.write-behind}.
+ * <p>
+ * Availability is decided against an in-memory counter per book, loaded from the database on first use and updated
+ * with compare-and-set, so concurrent borrows of the same title never take a lock. Accepted entries are queued for a
+ * single flusher thread, which appends each batch to the {@link InventoryJournal}, acknowledges it once forced to
+ * disk, then writes it to the {@code transaction} and {@code book} tables in one database transaction. Every
+ * transaction row keeps the journal sequence of its entry, so on start the entries already written are told apart
+ * from the ones to replay.
+ * <p>
+ * A batch that breaks a constraint, say for a book deleted meanwhile, is split until the entries that break it on their
+ * own are found; those are moved to the dead letter journal and logged, the rest is written. Any other failure is
+ * retried with backoff. Should it persist, the ledger stops taking entries and borrows and returns go straight to the
+ * database again; the journal is kept, and whatever it holds is replayed on the next start. The journal is only ever
+ * truncated once every entry in it is written or dead-lettered.
+ */
+@Component
+@Slf4j
+public class InventoryLedger {
+
+    private static final String SELECT_AMOUNT = "select amount from book where id = ?";
+
+    private static final String ADD_AMOUNT = "update book set amount = amount + ?, version = version + 1 where id = ?";
+
+    private final InventoryProperties inventoryProperties;
+
+    private final TransactionRepository transactionRepository;
+
+    private final EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BookAutocomplete bookAutocomplete;
+
+    private final StockChangeBroadcaster stockChangeBroadcaster;
+
+    private final CatalogVersions catalogVersions;
+
+    private final ExecutionThreads executionThreads;
+
+    // copies left once every accepted entry is written, per book used since its last invalidation
+    private final ConcurrentHashMap<Long, AtomicLong> available = new ConcurrentHashMap<>();
+
+    // sum of the accepted deltas not yet written to the database, per book
+    private final ConcurrentHashMap<Long, AtomicLong> unwritten = new ConcurrentHashMap<>();
+
+    // held while a batch is written, so a counter is never loaded between the commit and the unwritten update; not a
+    // monitor, a virtual thread blocked on the database while holding one would pin its carrier
+    private final Lock writeLock = new ReentrantLock();
+
+    // read locked to queue an entry, write locked to stop taking them, so no entry is queued once the flusher may
+    // have seen the queue empty for the last time
+    private final ReentrantReadWriteLock acceptLock = new ReentrantReadWriteLock();
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private InventoryJournal journal;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private long nextSequence;
+
+    public InventoryLedger(InventoryProperties inventoryProperties, TransactionRepository transactionRepository,
+                           EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate, BookAutocomplete bookAutocomplete,
+                           StockChangeBroadcaster stockChangeBroadcaster, CatalogVersions catalogVersions,
+                           ExecutionThreads executionThreads) {
+        this.inventoryProperties = inventoryProperties;
+        this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.bookAutocomplete = bookAutocomplete;
+        this.stockChangeBroadcaster = stockChangeBroadcaster;
+        this.catalogVersions = catalogVersions;
+        this.executionThreads = executionThreads;
+    }
+
+    /**
+     * Replay what the journal holds beyond the database, then start taking entries. Does nothing unless write-behind
+     * is enabled. Should the replay fail, the journal is kept and write-behind stays off.
+     */
+    @PostConstruct
+    public synchronized void start() throws IOException, InterruptedException {
+        if (!inventoryProperties.isWriteBehind() || flusher != null) {
+            return;
+        }
+        journal = new InventoryJournal(inventoryProperties.getJournal());
+        List<JournalEntry> entries = journal.read();
+        List<JournalEntry> replay = missing(entries);
+        // counted as unwritten until written, like the entries of a running ledger
+        unwritten.clear();
+        replay.forEach(entry -> unwritten.computeIfAbsent(entry.bookId(), id -> new AtomicLong()).addAndGet(entry.kind().delta()));
+        for (int from = 0; from < replay.size(); from += inventoryProperties.getMaxBatchSize()) {
+            List<JournalEntry> batch = replay.subList(from, Math.min(from + inventoryProperties.getMaxBatchSize(), replay.size()));
+            Map<Long, Long> deltas = writeDurably(batch);
+            if (deltas == null) {
+                log.error("Could not replay the inventory journal {}, write-behind stays off until the next start",
+                        inventoryProperties.getJournal());
+                journal.close();
+                return;
+            }
+            written(deltas);
+        }
+        journal.truncate();
+        Long last = transactionRepository.findMaxJournalSequence();
+        nextSequence = Math.max(last == null ? 0 : last, entries.isEmpty() ? 0 : entries.get(entries.size() - 1).sequence()) + 1;
+        log.info("Replayed {} of {} journaled inventory entries from {}", replay.size(), entries.size(),
+                inventoryProperties.getJournal());
+
+        running = true;
+        flusher = executionThreads.threadFactory("inventory-flusher-").newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    /**
+     * Write what is queued and stop taking entries, borrows and returns then go straight to the database again.
+     */
+    @PreDestroy
+    public synchronized void stop() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        stopAccepting();
+        flusher.join();
+        flusher = null;
+        journal.close();
+        available.clear();
+    }
+
+    /**
+     * @return whether borrows and returns are to be recorded here instead of in the database.
+     */
+    public boolean isWriteBehind() {
+        return running;
+    }
+
+    /**
+     * Take a copy of the book if one is left.
+     *
+     * @param bookId     the book.
+     * @param userId     the user borrowing it.
+     * @param returnDate date the copy is due back.
+     * @return a future completed with false right away when no copy is left or the book does not exist, otherwise
+     * with true once the borrow is journaled.
+     */
+    public CompletableFuture<Boolean> borrow(Long bookId, Long userId, Timestamp returnDate) {
+        AtomicLong copies = counter(bookId);
+        if (copies == null || !take(copies)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return record(new JournalEntry(0, JournalEntry.Kind.BORROW, bookId, userId, millis(returnDate),
+                System.currentTimeMillis(), NO_DATE), copies);
+    }
+
+    /**
+     * Give a copy of the book back.
+     *
+     * @param bookId       the book.
+     * @param userId       the user returning it.
+     * @param returnDate   date the copy was due back.
+     * @param receivedDate date the copy was received back.
+     * @return a future completed with false right away when the book does not exist, otherwise with true once the
+     * return is journaled.
+     */
+    public CompletableFuture<Boolean> giveBack(Long bookId, Long userId, Timestamp returnDate, Timestamp receivedDate) {
+        AtomicLong copies = counter(bookId);
+        if (copies == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        copies.incrementAndGet();
+        return record(new JournalEntry(0, JournalEntry.Kind.RETURN, bookId, userId, millis(returnDate),
+                System.currentTimeMillis(), millis(receivedDate)), copies);
+    }
+
+    /**
+     * Copies the database still counts as in stock although journaled borrows took them, so the synchronous path does
+     * not lend them again while write-behind is off with entries left to write.
+     *
+     * @param bookId the book.
+     * @return the borrows of the book not yet written, net of the returns among them; never negative.
+     */
+    public long unwrittenBorrows(Long bookId) {
+        AtomicLong pending = unwritten.get(bookId);
+        return pending == null ? 0 : Math.max(0, -pending.get());
+    }
+
+    /**
+     * Forget the counters of books whose amount was changed outside the ledger, they are loaded again on next use.
+     * A borrow racing the invalidation may still be counted against the old amount.
+     *
+     * @param bookIds the books.
+     */
+    public void invalidate(Collection<Long> bookIds) {
+        bookIds.forEach(available::remove);
+    }
+
+    private AtomicLong counter(Long bookId) {
+        AtomicLong copies = available.get(bookId);
+        if (copies != null) {
+            return copies;
+        }
+        writeLock.lock();
+        try {
+            // loaded outside computeIfAbsent, which would block on the database inside the map's own monitor
+            copies = available.get(bookId);
+            if (copies == null) {
+                copies = load(bookId);
+                // stores nothing for a book that does not exist
+                if (copies != null) {
+                    available.put(bookId, copies);
+                }
+            }
+            return copies;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private AtomicLong load(Long bookId) {
+        List<BigDecimal> amounts = jdbcTemplate.queryForList(SELECT_AMOUNT, BigDecimal.class, bookId);
+        if (amounts.isEmpty()) {
+            return null;
+        }
+        AtomicLong pending = unwritten.get(bookId);
+        return new AtomicLong(amounts.get(0).longValue() + (pending == null ? 0 : pending.get()));
+    }
+
+    private static boolean take(AtomicLong copies) {
+        long current;
+        do {
+            current = copies.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!copies.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    private CompletableFuture<Boolean> record(JournalEntry entry, AtomicLong copies) {
+        unwritten.computeIfAbsent(entry.bookId(), id -> new AtomicLong()).addAndGet(entry.kind().delta());
+        Pending pending = new Pending(entry, copies, new CompletableFuture<>());
+        acceptLock.readLock().lock();
+        try {
+            if (running) {
+                queue.add(pending);
+                return pending.journaled();
+            }
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+        reject(pending, new IllegalStateException("Inventory ledger stopped"));
+        return pending.journaled();
+    }
+
+    // rejects whatever is still queued, the flusher takes nothing more once it returns
+    private void stopAccepting() {
+        acceptLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            reject(pending, new IllegalStateException("Inventory ledger stopped"));
+        }
+    }
+
+    private void reject(Pending pending, Throwable cause) {
+        int delta = pending.entry().kind().delta();
+        pending.copies().addAndGet(-delta);
+        unwritten.get(pending.entry().bookId()).addAndGet(-delta);
+        pending.journaled().completeExceptionally(cause);
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(inventoryProperties.getFlushInterval().toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // everything that queued up meanwhile goes in the same group commit
+                batch.add(first);
+                queue.drainTo(batch, inventoryProperties.getMaxBatchSize() - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Inventory flush failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) throws InterruptedException {
+        List<JournalEntry> entries = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            entries.add(pending.entry().withSequence(nextSequence++));
+        }
+        try {
+            journal.append(entries);
+        } catch (IOException e) {
+            log.error("Could not journal {} inventory entries", entries.size(), e);
+            batch.forEach(pending -> reject(pending, e));
+            return;
+        }
+        batch.forEach(pending -> pending.journaled().complete(true));
+
+        Map<Long, Long> deltas = writeDurably(entries);
+        if (deltas == null) {
+            // still counted as unwritten, so the synchronous path leaves their copies alone
+            log.error("Could not write {} journaled inventory entries, write-behind is off until they are replayed on"
+                    + " the next start", entries.size());
+            stopAccepting();
+            // the counters would keep entries the database never saw
+            available.clear();
+            return;
+        }
+        try {
+            journal.truncate();
+        } catch (IOException e) {
+            // harmless, the entries carry sequences already in the database and are skipped on replay
+            log.warn("Could not truncate the inventory journal", e);
+        }
+        written(deltas);
+    }
+
+    /**
+     * Write the entries, retrying with backoff, and take each one off the unwritten counts once it is in the database
+     * or dead-lettered.
+     *
+     * @return the change to the amount per book, or null when every attempt failed.
+     */
+    private Map<Long, Long> writeDurably(List<JournalEntry> entries) throws InterruptedException {
+        Map<Long, Long> deltas = new HashMap<>();
+        Set<Long> settled = new HashSet<>();
+        List<JournalEntry> remaining = entries;
+        long backoff = inventoryProperties.getRetryBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                remaining = remaining.stream().filter(entry -> !settled.contains(entry.sequence())).collect(Collectors.toList());
+                if (attempt > 1) {
+                    remaining = settleCommitted(remaining, deltas, settled);
+                }
+                writeIsolating(remaining, deltas, settled);
+                return deltas;
+            } catch (RuntimeException e) {
+                if (attempt >= inventoryProperties.getWriteAttempts()) {
+                    log.error("Writing {} inventory entries failed {} times", remaining.size(), attempt, e);
+                    return null;
+                }
+                // with no lock held, loading the counter of another book does not wait out the backoff
+                log.warn("Writing {} inventory entries failed, retrying in {} ms", remaining.size(), backoff, e);
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    private void writeIsolating(List<JournalEntry> entries, Map<Long, Long> deltas, Set<Long> settled) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            commit(entries, deltas, settled);
+        } catch (RuntimeException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            if (entries.size() == 1) {
+                deadLetter(entries.get(0), e, settled);
+                return;
+            }
+            // halves that commit are kept, so a few bad entries cost a few more transactions, not one per entry
+            int half = entries.size() / 2;
+            writeIsolating(entries.subList(0, half), deltas, settled);
+            writeIsolating(entries.subList(half, entries.size()), deltas, settled);
+        }
+    }
+
+    private void commit(List<JournalEntry> entries, Map<Long, Long> deltas, Set<Long> settled) {
+        writeLock.lock();
+        try {
+            writeInTransaction(entries).forEach((bookId, delta) -> deltas.merge(bookId, delta, Long::sum));
+            settle(entries, settled);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // a commit whose outcome was lost is settled, not written twice; returns the entries still to write
+    private List<JournalEntry> settleCommitted(List<JournalEntry> entries, Map<Long, Long> deltas, Set<Long> settled) {
+        writeLock.lock();
+        try {
+            List<JournalEntry> missing = missing(entries);
+            Set<Long> unwrittenSequences = missing.stream().map(JournalEntry::sequence).collect(Collectors.toSet());
+            List<JournalEntry> committed = entries.stream()
+                    .filter(entry -> !unwrittenSequences.contains(entry.sequence()))
+                    .collect(Collectors.toList());
+            committed.forEach(entry -> deltas.merge(entry.bookId(), (long) entry.kind().delta(), Long::sum));
+            settle(committed, settled);
+            return missing;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void deadLetter(JournalEntry entry, RuntimeException cause, Set<Long> settled) {
+        log.error("Inventory entry {} can never be written, moving it to {}", entry,
+                inventoryProperties.getDeadLetterJournal(), cause);
+        try (InventoryJournal deadLetters = new InventoryJournal(inventoryProperties.getDeadLetterJournal())) {
+            deadLetters.append(List.of(entry));
+        } catch (IOException e) {
+            log.error("Could not dead-letter inventory entry {}", entry, e);
+        }
+        writeLock.lock();
+        try {
+            settle(List.of(entry), settled);
+            // the counter took the entry into account, loaded again it holds what the database does
+            available.remove(entry.bookId());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void settle(List<JournalEntry> entries, Set<Long> settled) {
+        for (JournalEntry entry : entries) {
+            unwritten.get(entry.bookId()).addAndGet(-entry.kind().delta());
+            settled.add(entry.sequence());
+        }
+    }
+
+    // a book or user that is gone fails the same way on every attempt
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the entries, in sequence order, whose transaction row is not in the database
+    private List<JournalEntry> missing(List<JournalEntry> entries) {
+        if (entries.isEmpty()) {
+            return entries;
+        }
+        Set<Long> written = transactionRepository.findJournalSequencesFrom(entries.get(0).sequence());
+        return entries.stream().filter(entry -> !written.contains(entry.sequence())).collect(Collectors.toList());
+    }
+
+    private Map<Long, Long> writeInTransaction(List<JournalEntry> entries) {
+        Map<Long, Long> deltas = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (JournalEntry entry : entries) {
+                entityManager.persist(Transaction.builder()
+                        .user(entityManager.getReference(User.class, entry.userId()))
+                        .book(entityManager.getReference(Book.class, entry.bookId()))
+                        .return_date(timestamp(entry.returnDate()))
+                        .trx_date(timestamp(entry.trxDate()))
+                        .received_date(timestamp(entry.receivedDate()))
+                        .journal_sequence(entry.sequence())
+                        .build());
+                deltas.merge(entry.bookId(), (long) entry.kind().delta(), Long::sum);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            // one update per title however many copies of it the batch moved
+            jdbcTemplate.batchUpdate(ADD_AMOUNT, deltas.entrySet().stream()
+                    .filter(delta -> delta.getValue() != 0)
+                    .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                    .collect(Collectors.toList()));
+        });
+        return deltas;
+    }
+
+    private void written(Map<Long, Long> deltas) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        deltas.forEach((bookId, delta) -> {
+            cache.evict(Book.class, bookId);
+            bookAutocomplete.addAmount(bookId, delta);
+        });
+        catalogVersions.booksChanged();
+        stockChangeBroadcaster.changed(deltas.keySet());
+    }
+
+    private record Pending(JournalEntry entry, AtomicLong copies, CompletableFuture<Boolean> journaled) {
+    }
+}
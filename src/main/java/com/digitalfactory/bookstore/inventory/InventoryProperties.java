@@ -0,0 +1,34 @@
+package com.digitalfactory.bookstore.inventory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "inventory")
+@Data
+public class InventoryProperties {
+
+    // decide borrows and returns in memory and write them to the database in batches
+    private boolean writeBehind = false;
+
+    // append-only file holding the borrows and returns not yet written to the database
+    private Path journal = Path.of("inventory.journal");
+
+    // append-only file of the borrows and returns that broke a constraint and were never written, to be settled by hand
+    private Path deadLetterJournal = Path.of("inventory-dead-letters.journal");
+
+    // how long the flusher waits for the first entry of a batch
+    private Duration flushInterval = Duration.ofMillis(5);
+
+    // entries journaled and written to the database in one group commit
+    private int maxBatchSize = 1000;
+
+    // attempts at writing a batch before write-behind is turned off, the journal then keeps it for the next start
+    private int writeAttempts = 5;
+
+    // wait before the second attempt, doubled before each further one
+    private Duration retryBackoff = Duration.ofMillis(200);
+
+}
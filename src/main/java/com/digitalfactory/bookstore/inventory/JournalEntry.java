@@ -0,0 +1,50 @@
+package com.digitalfactory.bookstore.inventory;
+
+import java.sql.Timestamp;
+
+/**
+ * One borrow or return of a copy, as written to the {@link InventoryJournal}. Dates are epoch milliseconds,
+ * {@link #NO_DATE} when absent.
+ *
+ * @param sequence     position in the journal, also stored on the transaction row once written to the database
+ * @param kind         whether a copy was taken or given back
+ * @param bookId       the book
+ * @param userId       the user
+ * @param returnDate   date the copy is due back
+ * @param trxDate      date of the borrow or return
+ * @param receivedDate date the copy was received back, returns only
+ */
+public record JournalEntry(long sequence, Kind kind, long bookId, long userId, long returnDate, long trxDate,
+                           long receivedDate) {
+
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    public enum Kind {
+        BORROW(-1), RETURN(1);
+
+        private final int delta;
+
+        Kind(int delta) {
+            this.delta = delta;
+        }
+
+        /**
+         * @return the change to the amount of the book
+         */
+        public int delta() {
+            return delta;
+        }
+    }
+
+    JournalEntry withSequence(long sequence) {
+        return new JournalEntry(sequence, kind, bookId, userId, returnDate, trxDate, receivedDate);
+    }
+
+    static long millis(Timestamp timestamp) {
+        return timestamp == null ? NO_DATE : timestamp.getTime();
+    }
+
+    static Timestamp timestamp(long millis) {
+        return millis == NO_DATE ? null : new Timestamp(millis);
+    }
+}
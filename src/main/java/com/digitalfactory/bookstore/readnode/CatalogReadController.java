@@ -0,0 +1,104 @@
+package com.digitalfactory.bookstore.readnode;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The catalog reads of {@code BookController} and {@code BookCategoryController} on the read node, same paths and
+ * same bodies. Full listings also stream as {@code application/x-ndjson}: each book is written as it is read, and a
+ * slow client slows the database cursor down instead of filling memory.
+ */
+@RestController
+@RequestMapping("/v1/api")
+@Profile(ReadNodeApplication.PROFILE)
+public class CatalogReadController {
+
+    private final Logger log = LoggerFactory.getLogger(CatalogReadController.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final CatalogReadRepository catalogReadRepository;
+
+    public CatalogReadController(CatalogReadRepository catalogReadRepository) {
+        this.catalogReadRepository = catalogReadRepository;
+    }
+
+    @GetMapping(
+            value = "/books",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public Flux<Book> getBookAll() {
+        log.debug("REST request to get all Books");
+        return catalogReadRepository.findAll();
+    }
+
+    @GetMapping(
+            value = "/book/{id}",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public Mono<ResponseEntity<Book>> getBook(@PathVariable Long id) {
+        log.debug("REST request to get Book : {}", id);
+        return catalogReadRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(
+            value = "/book-categories",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public Flux<BookCategory> getBookCategoryAll() {
+        log.debug("REST request to get all Book Categories");
+        return catalogReadRepository.findAllCategories();
+    }
+
+    @GetMapping(
+            value = "/available-books",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public Mono<Page<Book>> getAvailableBooks(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        log.debug("REST request to get available Books : {}, {}", page, size);
+        return availableBooks(null, page, size);
+    }
+
+    @GetMapping(
+            value = "/available-books-category/{id}",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public Mono<Page<Book>> getAvailableBooksByCategory(
+            @PathVariable Long id,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        log.debug("REST request to get available Books by category : {}, {}, {}", id, page, size);
+        return availableBooks(id, page, size);
+    }
+
+    private Mono<Page<Book>> availableBooks(Long categoryId, int page, int size) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        // both queries run concurrently, each on its own connection
+        return Mono.zip(
+                catalogReadRepository.findAvailable(categoryId, pageable).collectList(),
+                catalogReadRepository.countAvailable(categoryId)
+        ).map(result -> new PageImpl<>(result.getT1(), pageable, result.getT2()));
+    }
+}
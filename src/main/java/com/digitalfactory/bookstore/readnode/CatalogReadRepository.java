@@ -0,0 +1,102 @@
+package com.digitalfactory.bookstore.readnode;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * Catalog queries over R2DBC, mapped onto the JPA domain classes so both nodes serve the same representation. Books
+ * come with their category in one join, as the main application serves them.
+ */
+@Repository
+@Profile(ReadNodeApplication.PROFILE)
+public class CatalogReadRepository {
+
+    // rows fetched per round trip while a stream is consumed, so a large result never sits in memory at once
+    private static final int FETCH_SIZE = 500;
+
+    private static final String SELECT_BOOK = "select b.id, b.name, b.writer_name, b.amount, b.version,"
+            + " c.id as category_id, c.name as category_name, c.version as category_version"
+            + " from book b join book_category c on c.id = b.book_category_id";
+
+    private final DatabaseClient databaseClient;
+
+    public CatalogReadRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Book> findAll() {
+        return databaseClient.sql(SELECT_BOOK + " order by b.id")
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(CatalogReadRepository::book)
+                .all();
+    }
+
+    public Mono<Book> findById(Long id) {
+        return databaseClient.sql(SELECT_BOOK + " where b.id = :id")
+                .bind("id", id)
+                .map(CatalogReadRepository::book)
+                .one();
+    }
+
+    /**
+     * @param categoryId the category, or null for all of them.
+     * @param pageable   page number and size, results are ordered by id.
+     */
+    public Flux<Book> findAvailable(Long categoryId, Pageable pageable) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(SELECT_BOOK + " where b.amount > 0"
+                        + (categoryId == null ? "" : " and b.book_category_id = :categoryId")
+                        + " order by b.id limit :limit offset :offset")
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset());
+        if (categoryId != null) {
+            spec = spec.bind("categoryId", categoryId);
+        }
+        return spec.map(CatalogReadRepository::book).all();
+    }
+
+    /**
+     * @param categoryId the category, or null for all of them.
+     */
+    public Mono<Long> countAvailable(Long categoryId) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("select count(*) from book b where b.amount > 0"
+                + (categoryId == null ? "" : " and b.book_category_id = :categoryId"));
+        if (categoryId != null) {
+            spec = spec.bind("categoryId", categoryId);
+        }
+        return spec.map(row -> row.get(0, Long.class)).one();
+    }
+
+    public Flux<BookCategory> findAllCategories() {
+        return databaseClient.sql("select id, name, version from book_category order by id")
+                .map(row -> BookCategory.builder()
+                        .id(row.get("id", Long.class))
+                        .name(row.get("name", String.class))
+                        .version(row.get("version", Long.class))
+                        .build())
+                .all();
+    }
+
+    private static Book book(Readable row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .writer_name(row.get("writer_name", String.class))
+                .amount(row.get("amount", BigDecimal.class))
+                .version(row.get("version", Long.class))
+                .book_category(BookCategory.builder()
+                        .id(row.get("category_id", Long.class))
+                        .name(row.get("category_name", String.class))
+                        .version(row.get("category_version", Long.class))
+                        .build())
+                .build();
+    }
+}
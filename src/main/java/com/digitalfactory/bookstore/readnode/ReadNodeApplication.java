@@ -0,0 +1,42 @@
+package com.digitalfactory.bookstore.readnode;
+
+import com.digitalfactory.bookstore.security.JwtProperties;
+import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Read-only catalog node: the catalog reads of the main application on WebFlux and R2DBC, against the same database
+ * and with the same domain classes, while the JPA write path stays on the main application. Tokens issued by the main
+ * application are accepted as long as both share the {@code jwt} settings.
+ * <p>
+ * Runs with the {@code read-node} profile, e.g.
+ * {@code mvn spring-boot:run -Dspring-boot.run.main-class=com.digitalfactory.bookstore.readnode.ReadNodeApplication}.
+ * The main application scans this package too, everything in it is therefore limited to that profile.
+ */
+@SpringBootApplication(exclude = {
+        DataSourceAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class,
+        ReactiveUserDetailsServiceAutoConfiguration.class
+})
+@EnableConfigurationProperties(JwtProperties.class)
+@Import(JwtTokenProvider.class)
+@Profile(ReadNodeApplication.PROFILE)
+public class ReadNodeApplication {
+
+    public static final String PROFILE = "read-node";
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReadNodeApplication.class)
+                .profiles(PROFILE)
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+}
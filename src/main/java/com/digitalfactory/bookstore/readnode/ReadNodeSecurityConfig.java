@@ -0,0 +1,62 @@
+package com.digitalfactory.bookstore.readnode;
+
+import com.digitalfactory.bookstore.security.JwtTokenAuthenticationFilter;
+import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.WebFilter;
+
+/**
+ * The main application's rules for reads, bearer tokens and no session; anything but a read is refused.
+ */
+@Configuration
+@EnableWebFluxSecurity
+@Profile(ReadNodeApplication.PROFILE)
+public class ReadNodeSecurityConfig {
+
+    @Bean
+    SecurityWebFilterChain readNodeFilterChain(ServerHttpSecurity http, JwtTokenProvider tokenProvider) {
+        return http
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .exceptionHandling(c -> c.authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .authorizeExchange(authorize -> authorize
+                        // scraped without a token, on management.server.port only; the public port does not serve them
+                        .pathMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll()
+                        .pathMatchers(HttpMethod.GET, "/v1/**").authenticated()
+                        .anyExchange().denyAll()
+                )
+                .addFilterAt(jwtAuthentication(tokenProvider), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    private static WebFilter jwtAuthentication(JwtTokenProvider tokenProvider) {
+        return (exchange, chain) -> {
+            String bearerToken = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+            if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(JwtTokenAuthenticationFilter.HEADER_PREFIX)) {
+                Authentication auth = tokenProvider.authenticate(
+                        bearerToken.substring(JwtTokenAuthenticationFilter.HEADER_PREFIX.length()));
+                if (auth != null) {
+                    return chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+                }
+            }
+            return chain.filter(exchange);
+        };
+    }
+}
@@ -1,10 +1,35 @@
 package com.digitalfactory.bookstore.repository;
 
 import com.digitalfactory.bookstore.domain.BookCategory;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+
 @Repository
 public interface BookCategoryRepository extends JpaRepository<BookCategory, Long>, JpaSpecificationExecutor<BookCategory> {
+
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<BookCategory> findAll();
+
+    @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Page<BookCategory> findAll(Pageable pageable);
+
+    @Query("select c from BookCategory c where c.id > :afterId order by c.id")
+    Slice<BookCategory> findAllAfter(Long afterId, Pageable pageable);
+
+    // not query cached, a change made by another instance would not evict it
+    @Query("select concat(str(count(c)), '-', str(coalesce(sum(c.version), 0)), '-', str(coalesce(max(c.id), 0))) from BookCategory c")
+    String findCatalogVersion();
 }
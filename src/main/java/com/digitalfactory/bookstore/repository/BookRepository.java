@@ -2,16 +2,58 @@ package com.digitalfactory.bookstore.repository;
 
 import com.digitalfactory.bookstore.domain.Book;
 import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.service.dto.StockChange;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
 
     @Query(nativeQuery = true, value = "select * From Book Where book_category_id=:book_category_Id")
     List<Book> findAllByBook_category_Id(Long book_category_Id);
+
+    // a full scan must not push every row through the second-level cache
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select b from Book b join fetch b.book_category")
+    Stream<Book> streamAll();
+
+    @Query("select b from Book b where b.id > :afterId order by b.id")
+    Slice<Book> findAllAfter(Long afterId, Pageable pageable);
+
+    @Query("select b from Book b where b.amount > 0")
+    Page<Book> findAvailable(Pageable pageable);
+
+    @Query("select b from Book b where b.book_category.id = :book_category_id and b.amount > 0")
+    Page<Book> findAvailableByCategory(Long book_category_id, Pageable pageable);
+
+    @Query("select b.id, b.name, b.writer_name from Book b where b.name in :names")
+    List<Object[]> findKeysByNameIn(Collection<String> names);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select b.id, b.name, b.writer_name, b.amount from Book b order by b.id")
+    Stream<Object[]> streamSearchFields();
+
+    @Query("select new com.digitalfactory.bookstore.service.dto.StockChange(b.id, b.book_category.id, b.amount)"
+            + " from Book b where b.id in :ids")
+    List<StockChange> findStockByIdIn(Collection<Long> ids);
+
+    // changes on every insert, update and delete, including the JDBC stock updates which bump the version column
+    @Query("select concat(str(count(b)), '-', str(coalesce(sum(b.version), 0)), '-', str(coalesce(max(b.id), 0))) from Book b")
+    String findCatalogVersion();
 }
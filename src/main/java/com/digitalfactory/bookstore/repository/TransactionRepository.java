@@ -1,10 +1,55 @@
 package com.digitalfactory.bookstore.repository;
 
 import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.service.dto.TransactionView;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
+
+    String SELECT_VIEW = "select new com.digitalfactory.bookstore.service.dto.TransactionView("
+            + "t.id, u.id, u.username, b.id, b.name, t.return_date, t.trx_date, t.received_date)"
+            + " from Transaction t join t.user u join t.book b";
+
+    @Query(SELECT_VIEW)
+    List<TransactionView> findAllViews();
+
+    @Query(value = SELECT_VIEW, countQuery = "select count(t) from Transaction t")
+    Page<TransactionView> findAllViews(Pageable pageable);
+
+    @Query(SELECT_VIEW + " where t.id = :id")
+    Optional<TransactionView> findViewById(Long id);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW)
+    Stream<TransactionView> streamAllViews();
+
+    @Query(SELECT_VIEW + " where t.trx_date is not null order by t.trx_date desc, t.id desc")
+    Slice<TransactionView> findLatest(Pageable pageable);
+
+    @Query(SELECT_VIEW + " where t.trx_date < :trx_date or (t.trx_date = :trx_date and t.id < :id)"
+            + " order by t.trx_date desc, t.id desc")
+    Slice<TransactionView> findAllBefore(Timestamp trx_date, Long id, Pageable pageable);
+
+    @Query("select max(t.journal_sequence) from Transaction t")
+    Long findMaxJournalSequence();
+
+    @Query("select t.journal_sequence from Transaction t where t.journal_sequence >= :from")
+    Set<Long> findJournalSequencesFrom(long from);
 }
@@ -1,12 +1,14 @@
 package com.digitalfactory.bookstore.repository;
 
 import com.digitalfactory.bookstore.domain.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    @EntityGraph(attributePaths = "roles")
     Optional<User> findByUsername(String username);
 
 }
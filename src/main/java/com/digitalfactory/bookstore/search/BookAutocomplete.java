@@ -0,0 +1,533 @@
+package com.digitalfactory.bookstore.search;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.service.dto.BookSuggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Type-ahead over titles and writers in a compressed prefix trie.
+ *
+ * Every title and writer is a suggestion, keyed by its folded text from each of its first words on, so typing any
+ * word of it finds it. Each node keeps the best {@link #MAX_SUGGESTIONS} suggestions of its subtree ranked by
+ * available copies, the copies of a writer being those of all their books, so a lookup is a walk down the prefix.
+ * Changes only recompute the nodes on the paths of the suggestions they touch.
+ *
+ * Like {@link BookSearchIndex} it is built once the application is ready and then follows the book changes as
+ * their transactions commit.
+ */
+@Component
+public class BookAutocomplete {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    static final String TITLE = "title";
+
+    static final String WRITER = "writer";
+
+    // keys start at each of the first words only, a long title does not multiply its keys
+    private static final int MAX_KEYS = 6;
+
+    private static final Node[] NO_CHILDREN = {};
+
+    private static final char[] NO_FIRSTS = {};
+
+    private static final Entry[] NO_ENTRIES = {};
+
+    private static final Comparator<Entry> RANK = Comparator.<Entry>comparingLong(entry -> entry.amount).reversed()
+            .thenComparing(entry -> entry.text);
+
+    private final Logger log = LoggerFactory.getLogger(BookAutocomplete.class);
+
+    private final BookRepository bookRepository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Node root = new Node("");
+
+    private final Map<String, Entry> titles = new HashMap<>();
+
+    private final Map<String, Entry> writers = new HashMap<>();
+
+    private final Map<Long, Listing> books = new HashMap<>();
+
+    public BookAutocomplete(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> books = bookRepository.streamSearchFields()) {
+                books.forEach(book -> put((Long) book[0], (String) book[1], (String) book[2], (BigDecimal) book[3]));
+            }
+        });
+        log.info("Loaded {} titles and {} writers for autocomplete in {} ms", titles.size(), writers.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Take the book as saved, once the current transaction commits.
+     */
+    public void update(Book book) {
+        Long id = book.getId();
+        String name = book.getName();
+        String writerName = book.getWriter_name();
+        BigDecimal amount = book.getAmount();
+        AfterCommit.run(() -> put(id, name, writerName, amount));
+    }
+
+    /**
+     * Drop the book once the current transaction commits.
+     */
+    public void remove(Long id) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeBook(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Move the available copies of the book by {@code delta} once the current transaction commits.
+     */
+    public void addAmount(Long id, long delta) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                Listing listing = books.get(id);
+                if (listing != null) {
+                    move(listing, delta);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Set the available copies of the book once the current transaction commits.
+     */
+    public void setAmount(Long id, BigDecimal amount) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                Listing listing = books.get(id);
+                if (listing != null) {
+                    move(listing, amount.longValue() - listing.amount);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Take the book now, replacing what was held for its id.
+     */
+    public void put(Long id, String name, String writerName, BigDecimal amount) {
+        String titleKey = String.join(" ", BookSearchIndex.tokenize(name));
+        String writerKey = String.join(" ", BookSearchIndex.tokenize(writerName));
+        long copies = amount == null ? 0 : amount.longValue();
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+            Entry title = titles.computeIfAbsent(titleKey, key -> new Entry(name, TITLE, key));
+            Entry writer = writers.computeIfAbsent(writerKey, key -> new Entry(writerName, WRITER, key));
+            books.put(id, new Listing(title, writer, copies));
+            addBook(title, copies);
+            addBook(writer, copies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The best suggestions for what has been typed so far, the most available first.
+     *
+     * @param prefix the text typed so far.
+     * @param limit  how many suggestions, at most {@link #MAX_SUGGESTIONS}.
+     * @return the suggestions.
+     */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String key = String.join(" ", BookSearchIndex.tokenize(prefix));
+        lock.readLock().lock();
+        try {
+            Entry[] top = lookup(key);
+            List<BookSuggestion> suggestions = new ArrayList<>();
+            for (int i = 0; i < Math.min(limit, top.length); i++) {
+                suggestions.add(BookSuggestion.builder().text(top[i].text).type(top[i].type).amount(top[i].amount).build());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void move(Listing listing, long delta) {
+        listing.amount += delta;
+        listing.title.amount += delta;
+        listing.writer.amount += delta;
+        reweigh(listing.title, delta);
+        reweigh(listing.writer, delta);
+    }
+
+    private void addBook(Entry entry, long copies) {
+        entry.books++;
+        entry.amount += copies;
+        if (entry.books == 1) {
+            for (String key : entry.keys) {
+                insert(key, entry);
+            }
+        } else {
+            reweigh(entry, copies);
+        }
+    }
+
+    private void removeBook(Long id) {
+        Listing listing = books.remove(id);
+        if (listing == null) {
+            return;
+        }
+        removeFrom(listing.title, titles, listing.amount);
+        removeFrom(listing.writer, writers, listing.amount);
+    }
+
+    private void removeFrom(Entry entry, Map<String, Entry> entries, long copies) {
+        entry.books--;
+        entry.amount -= copies;
+        if (entry.books == 0) {
+            for (String key : entry.keys) {
+                delete(key, entry);
+            }
+            entries.remove(entry.key);
+        } else {
+            reweigh(entry, -copies);
+        }
+    }
+
+    private void reweigh(Entry entry, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (String key : entry.keys) {
+            List<Node> path = path(key);
+            if (path == null) {
+                continue;
+            }
+            if (delta > 0) {
+                promote(path, entry);
+            } else {
+                refresh(path);
+            }
+        }
+    }
+
+    private Entry[] lookup(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.child(prefix.charAt(i));
+            if (child == null) {
+                return NO_ENTRIES;
+            }
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common == prefix.length()) {
+                return child.top;
+            }
+            if (common < child.label.length()) {
+                return NO_ENTRIES;
+            }
+            node = child;
+            i += common;
+        }
+        return node.top;
+    }
+
+    private void insert(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.addChild(child);
+                i = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    // split the edge where the new key leaves it
+                    Node middle = new Node(child.label.substring(0, common));
+                    middle.top = child.top;
+                    node.replaceChild(child, middle);
+                    child.label = child.label.substring(common);
+                    middle.addChild(child);
+                    child = middle;
+                }
+                i += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        node.terminal = Arrays.copyOf(node.terminal, node.terminal.length + 1);
+        node.terminal[node.terminal.length - 1] = entry;
+        promote(path, entry);
+    }
+
+    private void delete(String key, Entry entry) {
+        List<Node> path = path(key);
+        if (path == null) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        node.terminal = Arrays.stream(node.terminal).filter(terminal -> terminal != entry).toArray(Entry[]::new);
+        for (int p = path.size() - 1; p > 0; p--) {
+            Node current = path.get(p);
+            if (current.terminal.length > 0) {
+                break;
+            }
+            if (current.children.length == 0) {
+                path.get(p - 1).removeChild(current);
+                path.remove(p);
+            } else {
+                if (current.children.length == 1) {
+                    // keep the trie compressed, a node without suggestions and one child merges into it
+                    Node only = current.children[0];
+                    current.label = current.label + only.label;
+                    current.children = only.children;
+                    current.firsts = only.firsts;
+                    current.terminal = only.terminal;
+                    current.top = only.top;
+                }
+                break;
+            }
+        }
+        refresh(path);
+    }
+
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return null;
+            }
+            node = child;
+            path.add(node);
+            i += child.label.length();
+        }
+        return path;
+    }
+
+    // the entry was added or gained copies, it is the only one that can move up in the nodes above it
+    private static void promote(List<Node> path, Entry entry) {
+        for (int p = path.size() - 1; p >= 0; p--) {
+            if (!path.get(p).promote(entry)) {
+                break;
+            }
+        }
+    }
+
+    // the entry was removed or lost copies, the nodes above it rank their subtree again
+    private static void refresh(List<Node> path) {
+        for (int p = path.size() - 1; p >= 0; p--) {
+            path.get(p).recomputeTop();
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static List<String> keys(String key) {
+        List<String> keys = new ArrayList<>();
+        int start = 0;
+        while (start < key.length() && keys.size() < MAX_KEYS) {
+            keys.add(key.substring(start));
+            int space = key.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+        return keys;
+    }
+
+    private static final class Entry {
+
+        private final String text;
+
+        private final String type;
+
+        private final String key;
+
+        private final List<String> keys;
+
+        private long amount;
+
+        private int books;
+
+        private Entry(String text, String type, String key) {
+            this.text = text;
+            this.type = type;
+            this.key = key;
+            this.keys = keys(key);
+        }
+    }
+
+    private static final class Listing {
+
+        private final Entry title;
+
+        private final Entry writer;
+
+        private long amount;
+
+        private Listing(Entry title, Entry writer, long amount) {
+            this.title = title;
+            this.writer = writer;
+            this.amount = amount;
+        }
+    }
+
+    private static final class Node {
+
+        private String label;
+
+        private Node[] children = NO_CHILDREN;
+
+        // first character of each child's label, scanned without touching the children themselves
+        private char[] firsts = NO_FIRSTS;
+
+        private Entry[] terminal = NO_ENTRIES;
+
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node child(char first) {
+            for (int i = 0; i < firsts.length; i++) {
+                if (firsts[i] == first) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node child) {
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+            firsts = Arrays.copyOf(firsts, firsts.length + 1);
+            firsts[firsts.length - 1] = child.label.charAt(0);
+        }
+
+        private void replaceChild(Node old, Node replacement) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == old) {
+                    children[i] = replacement;
+                }
+            }
+        }
+
+        private void removeChild(Node child) {
+            int at = Arrays.asList(children).indexOf(child);
+            Node[] remaining = new Node[children.length - 1];
+            char[] remainingFirsts = new char[firsts.length - 1];
+            System.arraycopy(children, 0, remaining, 0, at);
+            System.arraycopy(children, at + 1, remaining, at, remaining.length - at);
+            System.arraycopy(firsts, 0, remainingFirsts, 0, at);
+            System.arraycopy(firsts, at + 1, remainingFirsts, at, remainingFirsts.length - at);
+            children = remaining;
+            firsts = remainingFirsts;
+        }
+
+        /**
+         * Move the entry up in this node, false when it does not make the top here and so cannot above either.
+         */
+        private boolean promote(Entry entry) {
+            if (top.length == 0 && children.length == 0 && terminal.length == 1 && terminal[0] == entry) {
+                // a leaf with one suggestion, the most common node, shares one array for both
+                top = terminal;
+                return true;
+            }
+            boolean ranked = false;
+            for (Entry candidate : top) {
+                ranked |= candidate == entry;
+            }
+            if (!ranked && top.length == MAX_SUGGESTIONS && RANK.compare(entry, top[MAX_SUGGESTIONS - 1]) >= 0) {
+                return false;
+            }
+            // a new array rather than in place, a node made by splitting an edge shares the array of its child
+            Entry[] promoted = new Entry[ranked ? top.length : Math.min(top.length + 1, MAX_SUGGESTIONS)];
+            int i = 0;
+            boolean placed = false;
+            for (Entry candidate : top) {
+                if (candidate == entry) {
+                    continue;
+                }
+                if (!placed && RANK.compare(entry, candidate) < 0) {
+                    promoted[i++] = entry;
+                    placed = true;
+                }
+                if (i < promoted.length) {
+                    promoted[i++] = candidate;
+                }
+            }
+            if (!placed) {
+                promoted[i] = entry;
+            }
+            top = promoted;
+            return true;
+        }
+
+        private void recomputeTop() {
+            // an entry has several keys and may reach this node through more than one child
+            Set<Entry> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            Collections.addAll(candidates, terminal);
+            for (Node child : children) {
+                Collections.addAll(candidates, child.top);
+            }
+            top = candidates.stream().sorted(RANK).limit(MAX_SUGGESTIONS).toArray(Entry[]::new);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.digitalfactory.bookstore.search;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over the name and writer of every book.
+ *
+ * Each query word matches index terms exactly, as a prefix, or with one typo (an insertion, deletion, substitution
+ * or transposition) for words of four letters or more. Books must match every query word and are ranked by the sum
+ * over the words of the best match: exact before prefix before typo, rarer terms before common ones, the name before
+ * the writer.
+ *
+ * The index is built from the database once the application is ready and then follows
+ * {@link #update(Book)} and {@link #remove(Long)}, applied when the surrounding transaction commits.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    // a short prefix of a large catalog expands to many terms, the shortest terms are the likeliest completions
+    private static final int MAX_PREFIX_TERMS = 256;
+
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final float EXACT = 1.0f;
+
+    private static final float PREFIX = 0.6f;
+
+    private static final float FUZZY = 0.4f;
+
+    private static final float NAME_BOOST = 2.0f;
+
+    private static final float WRITER_BOOST = 1.0f;
+
+    private final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private final BookRepository bookRepository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Term> terms = new TreeMap<>();
+
+    // every term of four letters or more under each of its one-letter deletions, finds the terms one typo away
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    public BookSearchIndex(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> books = bookRepository.streamSearchFields()) {
+                books.forEach(book -> put((Long) book[0], (String) book[1], (String) book[2]));
+            }
+        });
+        log.info("Indexed {} books for search in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Index the book, replacing what was indexed for its id, once the current transaction commits.
+     *
+     * @param book the saved book.
+     */
+    public void update(Book book) {
+        Long id = book.getId();
+        String name = book.getName();
+        String writerName = book.getWriter_name();
+        AfterCommit.run(() -> put(id, name, writerName));
+    }
+
+    /**
+     * Drop the book from the index once the current transaction commits.
+     *
+     * @param id the id of the deleted book.
+     */
+    public void remove(Long id) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeDocument(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Index the book now, replacing what was indexed for its id.
+     */
+    public void put(Long id, String name, String writerName) {
+        Document document = new Document(tokenize(name), tokenize(writerName));
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            documents.put(id, document);
+            for (String token : document.name()) {
+                term(token).name.add(id);
+            }
+            for (String token : document.writerName()) {
+                term(token).writerName.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search the books matching every word of the query.
+     *
+     * @param query    the words to look for.
+     * @param pageable the page of results, its sort is ignored for the relevance order.
+     * @return the ids of the matching books, best match first.
+     */
+    public Page<Long> search(String query, Pageable pageable) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        Scores scores = null;
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                Scores matches = match(token);
+                scores = scores == null ? matches : scores.intersect(matches);
+                if (scores.size() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[] ranked = scores.top((int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE));
+        List<Long> ids = new ArrayList<>();
+        for (int i = (int) Math.min(pageable.getOffset(), ranked.length); i < ranked.length; i++) {
+            ids.add(ranked[i]);
+        }
+        return new PageImpl<>(ids, pageable, scores.size());
+    }
+
+    private Scores match(String token) {
+        Scores scores = new Scores(64);
+        Term exact = terms.get(token);
+        if (exact != null) {
+            score(exact, EXACT, scores);
+        }
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            List<Map.Entry<String, Term>> completions = new ArrayList<>(
+                    terms.subMap(token, false, token + Character.MAX_VALUE, false).entrySet());
+            if (completions.size() > MAX_PREFIX_TERMS) {
+                completions.sort(Comparator.comparingInt(entry -> entry.getKey().length()));
+                completions = completions.subList(0, MAX_PREFIX_TERMS);
+            }
+            for (Map.Entry<String, Term> completion : completions) {
+                score(completion.getValue(), PREFIX, scores);
+            }
+        }
+        if (token.length() >= MIN_FUZZY_LENGTH) {
+            for (String candidate : typoCandidates(token)) {
+                if (!candidate.startsWith(token) && withinOneEdit(token, candidate)) {
+                    score(terms.get(candidate), FUZZY, scores);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private void score(Term term, float weight, Scores scores) {
+        float idf = (float) Math.log(1 + documents.size() / (double) (term.name.size() + term.writerName.size()));
+        float name = weight * idf * NAME_BOOST;
+        float writerName = weight * idf * WRITER_BOOST;
+        for (int i = 0; i < term.name.size(); i++) {
+            scores.max(term.name.get(i), name);
+        }
+        for (int i = 0; i < term.writerName.size(); i++) {
+            long id = term.writerName.get(i);
+            scores.max(id, term.name.contains(id) ? name + writerName : writerName);
+        }
+    }
+
+    private Set<String> typoCandidates(String token) {
+        Set<String> candidates = new HashSet<>(deletions.getOrDefault(token, Set.of()));
+        for (String deletion : deletionsOf(token)) {
+            if (terms.containsKey(deletion)) {
+                candidates.add(deletion);
+            }
+            candidates.addAll(deletions.getOrDefault(deletion, Set.of()));
+        }
+        candidates.remove(token);
+        return candidates;
+    }
+
+    private Term term(String token) {
+        return terms.computeIfAbsent(token, key -> {
+            if (key.length() >= MIN_FUZZY_LENGTH) {
+                for (String deletion : deletionsOf(key)) {
+                    deletions.computeIfAbsent(deletion, d -> new HashSet<>(2)).add(key);
+                }
+            }
+            return new Term();
+        });
+    }
+
+    private void removeDocument(Long id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String token : document.name()) {
+            removePosting(token, id, true);
+        }
+        for (String token : document.writerName()) {
+            removePosting(token, id, false);
+        }
+    }
+
+    private void removePosting(String token, long id, boolean name) {
+        Term term = terms.get(token);
+        if (term == null) {
+            return;
+        }
+        (name ? term.name : term.writerName).remove(id);
+        if (term.name.size() == 0 && term.writerName.size() == 0) {
+            terms.remove(token);
+            if (token.length() >= MIN_FUZZY_LENGTH) {
+                for (String deletion : deletionsOf(token)) {
+                    Set<String> similar = deletions.get(deletion);
+                    if (similar != null && similar.remove(token) && similar.isEmpty()) {
+                        deletions.remove(deletion);
+                    }
+                }
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATOR.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static Set<String> deletionsOf(String token) {
+        Set<String> deletions = new HashSet<>();
+        for (int i = 0; i < token.length(); i++) {
+            deletions.add(token.substring(0, i) + token.substring(i + 1));
+        }
+        return deletions;
+    }
+
+    /**
+     * Optimal string alignment distance of at most one, so one adjacent transposition counts as one typo.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < la && i < lb && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (la == lb) {
+            if (i == la) {
+                return true;
+            }
+            if (a.regionMatches(i + 1, b, i + 1, la - i - 1)) {
+                return true;
+            }
+            return i + 1 < la && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.regionMatches(i + 2, b, i + 2, la - i - 2);
+        }
+        return la < lb ? a.regionMatches(i, b, i + 1, la - i) : b.regionMatches(i, a, i + 1, lb - i);
+    }
+
+    private record Document(List<String> name, List<String> writerName) {
+    }
+
+    private static final class Term {
+
+        private final Postings name = new Postings();
+
+        private final Postings writerName = new Postings();
+    }
+}
@@ -0,0 +1,50 @@
+package com.digitalfactory.bookstore.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of book ids kept in a primitive array, ids mostly arrive in increasing order so adding is an append.
+ */
+final class Postings {
+
+    private long[] ids = new long[2];
+
+    private int size;
+
+    boolean add(long id) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i >= 0) {
+            return false;
+        }
+        i = -i - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+        System.arraycopy(ids, i, ids, i + 1, size - i);
+        ids[i] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long id) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i < 0) {
+            return false;
+        }
+        System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    long get(int i) {
+        return ids[i];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,116 @@
+package com.digitalfactory.bookstore.search;
+
+import java.util.PriorityQueue;
+
+/**
+ * Score per book id in an open-addressing table of primitives, a query touches thousands of books and boxing each
+ * of them would cost more than the scoring itself. Book ids are positive, 0 marks a free slot.
+ */
+final class Scores {
+
+    private long[] ids;
+
+    private float[] scores;
+
+    private int size;
+
+    Scores(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+        this.ids = new long[capacity];
+        this.scores = new float[capacity];
+    }
+
+    /**
+     * Keep the higher of the current score of the id and this one.
+     */
+    void max(long id, float score) {
+        int slot = slot(id);
+        if (ids[slot] == 0) {
+            ids[slot] = id;
+            scores[slot] = score;
+            if (++size * 2 > ids.length) {
+                grow();
+            }
+        } else if (score > scores[slot]) {
+            scores[slot] = score;
+        }
+    }
+
+    /**
+     * The ids present in both, scored with the sum of both scores.
+     */
+    Scores intersect(Scores other) {
+        Scores smaller = size <= other.size ? this : other;
+        Scores larger = smaller == this ? other : this;
+        Scores both = new Scores(smaller.size);
+        for (int i = 0; i < smaller.ids.length; i++) {
+            long id = smaller.ids[i];
+            if (id != 0) {
+                int slot = larger.slot(id);
+                if (larger.ids[slot] != 0) {
+                    both.max(id, smaller.scores[i] + larger.scores[slot]);
+                }
+            }
+        }
+        return both;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The ids ranked from first to {@code count}, by score then by id.
+     */
+    long[] top(int count) {
+        int k = Math.min(count, size);
+        if (k == 0) {
+            return new long[0];
+        }
+        // min-heap of the best k slots seen so far, its head is the weakest of them
+        PriorityQueue<Integer> best = new PriorityQueue<>(k, (a, b) -> compare(b, a));
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0) {
+                if (best.size() < k) {
+                    best.add(i);
+                } else if (compare(i, best.peek()) < 0) {
+                    best.poll();
+                    best.add(i);
+                }
+            }
+        }
+        long[] ranked = new long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = ids[best.poll()];
+        }
+        return ranked;
+    }
+
+    // negative when slot a ranks before slot b
+    private int compare(int a, int b) {
+        int byScore = Float.compare(scores[b], scores[a]);
+        return byScore != 0 ? byScore : Long.compare(ids[a], ids[b]);
+    }
+
+    private int slot(long id) {
+        int mask = ids.length - 1;
+        int slot = (int) (id * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        while (ids[slot] != 0 && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        float[] oldScores = scores;
+        ids = new long[oldIds.length * 2];
+        scores = new float[oldIds.length * 2];
+        size = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != 0) {
+                max(oldIds[i], oldScores[i]);
+            }
+        }
+    }
+}
@@ -12,4 +12,7 @@ public class JwtProperties {
     // validity in milliseconds
     private long validityInMs = 3600000; // 1h
 
+    // verified tokens kept in memory, each until its own expiration
+    private long cacheMaximumSize = 10000;
+
 }
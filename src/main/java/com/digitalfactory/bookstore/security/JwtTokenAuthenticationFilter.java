@@ -30,10 +30,10 @@ public class JwtTokenAuthenticationFilter extends GenericFilterBean {
             throws IOException, ServletException {
         
         String token = resolveToken((HttpServletRequest) req);
-        log.info("Extracting token from HttpServletRequest: {}", token);
+        log.debug("Extracting token from HttpServletRequest: {}", token);
         
-        if (token != null && jwtTokenProvider.validateToken(token)) {
-            Authentication auth = jwtTokenProvider.getAuthentication(token);
+        if (token != null) {
+            Authentication auth = jwtTokenProvider.authenticate(token);
             
             if (auth != null && !(auth instanceof AnonymousAuthenticationToken)) {
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
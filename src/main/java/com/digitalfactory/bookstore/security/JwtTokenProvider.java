@@ -1,7 +1,12 @@
 package com.digitalfactory.bookstore.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import javax.crypto.SecretKey;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,9 +19,12 @@ import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.joining;
 
@@ -28,13 +36,49 @@ public class JwtTokenProvider {
     private static final String AUTHORITIES_KEY = "roles";
     
     private final JwtProperties jwtProperties;
+
+    private final MeterRegistry meterRegistry;
     
     private SecretKey secretKey;
+
+    private JwtParser jwtParser;
+
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    private Timer cachedTimer;
+
+    private Timer verifiedTimer;
+
+    private Timer invalidTimer;
     
     @PostConstruct
     public void init() {
+        this.cachedTimer = authenticationTimer("cached");
+        this.verifiedTimer = authenticationTimer("verified");
+        this.invalidTimer = authenticationTimer("invalid");
         var secret = Base64.getEncoder().encodeToString(this.jwtProperties.getSecretKey().getBytes());
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        // the parser is immutable and thread safe, build it once instead of per request
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(this.secretKey).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(this.jwtProperties.getCacheMaximumSize())
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.expiresAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
     
     public String createToken(Authentication authentication) {
@@ -59,8 +103,59 @@ public class JwtTokenProvider {
     }
     
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(this.secretKey).build().parseClaimsJws(token).getBody();
-        
+        return toAuthentication(this.jwtParser.parseClaimsJws(token).getBody(), token);
+    }
+    
+    public boolean validateToken(String token) {
+        try {
+            Jws<Claims> claims = this.jwtParser.parseClaimsJws(token);
+            //  parseClaimsJws will check expiration date. No need do here.
+            log.debug("expiration date: {}", claims.getBody().getExpiration());
+            return true;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Verify the token and build its {@link Authentication} in one parse. Tokens verified before are served from a
+     * bounded cache until their expiration, without checking the signature again.
+     *
+     * @param token the bearer token.
+     * @return the authentication, or null when the token is invalid or expired.
+     */
+    public Authentication authenticate(String token) {
+        long start = System.nanoTime();
+        String key = digest(token);
+        VerifiedToken cached = this.verifiedTokens.getIfPresent(key);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            this.cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached.authentication();
+        }
+        try {
+            Claims claims = this.jwtParser.parseClaimsJws(token).getBody();
+            Authentication authentication = toAuthentication(claims, token);
+            if (claims.getExpiration() != null) {
+                this.verifiedTokens.put(key, new VerifiedToken(authentication, claims.getExpiration().getTime()));
+            }
+            this.verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return authentication;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.error("Invalid JWT token: {}", e.getMessage());
+        }
+        this.invalidTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return null;
+    }
+
+    private Timer authenticationTimer(String outcome) {
+        return Timer.builder("bookstore.jwt.authentication")
+                .description("Bearer tokens checked, from the cache or by verifying the signature")
+                .tag("outcome", outcome)
+                .register(this.meterRegistry);
+    }
+
+    private Authentication toAuthentication(Claims claims, String token) {
         Object authoritiesClaim = claims.get(AUTHORITIES_KEY);
         
         Collection<? extends GrantedAuthority> authorities = authoritiesClaim == null ? AuthorityUtils.NO_AUTHORITIES
@@ -70,19 +165,18 @@ public class JwtTokenProvider {
         
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
-    
-    public boolean validateToken(String token) {
+
+    private static String digest(String token) {
         try {
-            Jws<Claims> claims = Jwts
-                    .parserBuilder().setSigningKey(this.secretKey).build()
-                    .parseClaimsJws(token);
-            //  parseClaimsJws will check expiration date. No need do here.
-            log.info("expiration date: {}", claims.getBody().getExpiration());
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by every Java implementation so this exception will never happen
+            throw new IllegalStateException(e);
         }
-        return false;
+    }
+
+    private record VerifiedToken(Authentication authentication, long expiresAt) {
     }
     
 }
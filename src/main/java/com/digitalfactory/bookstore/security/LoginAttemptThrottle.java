@@ -0,0 +1,38 @@
+package com.digitalfactory.bookstore.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts failed logins per username in memory and blocks the username once it reaches the limit, until no failure
+ * has been seen for the configured window.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    private final LoginProperties loginProperties;
+
+    private final Cache<String, Integer> failedAttempts;
+
+    public LoginAttemptThrottle(LoginProperties loginProperties) {
+        this.loginProperties = loginProperties;
+        this.failedAttempts = Caffeine.newBuilder()
+                .maximumSize(loginProperties.getFailedAttemptsMaximumSize())
+                .expireAfterWrite(loginProperties.getFailedAttemptsWindow())
+                .build();
+    }
+
+    public boolean isBlocked(String username) {
+        Integer attempts = this.failedAttempts.getIfPresent(username);
+        return attempts != null && attempts >= this.loginProperties.getMaxFailedAttempts();
+    }
+
+    public void loginFailed(String username) {
+        this.failedAttempts.asMap().merge(username, 1, Integer::sum);
+    }
+
+    public void loginSucceeded(String username) {
+        this.failedAttempts.invalidate(username);
+    }
+}
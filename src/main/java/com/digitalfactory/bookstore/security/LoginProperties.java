@@ -0,0 +1,27 @@
+package com.digitalfactory.bookstore.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "login")
+@Data
+public class LoginProperties {
+
+    // threads verifying password hashes, kept apart from the request threads
+    private int hashingThreads = Runtime.getRuntime().availableProcessors();
+
+    // logins waiting for a hashing thread, beyond that new logins get 503
+    private int hashingQueueCapacity = 100;
+
+    // failed logins per username before further attempts get 429
+    private int maxFailedAttempts = 5;
+
+    // how long failed attempts are remembered after the last one
+    private Duration failedAttemptsWindow = Duration.ofMinutes(15);
+
+    // usernames tracked for failed attempts
+    private long failedAttemptsMaximumSize = 100000;
+
+}
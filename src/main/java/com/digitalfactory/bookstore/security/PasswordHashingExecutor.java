@@ -0,0 +1,52 @@
+package com.digitalfactory.bookstore.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fixed size pool running the password checks of logins, so a burst of logins queues here instead of holding the
+ * servlet threads that serve the rest of the API. It is deliberately not an {@link java.util.concurrent.Executor}
+ * bean, which would replace the application task executor, and keeps platform threads in every execution mode:
+ * hashing is CPU bound and the pool size is the limit.
+ */
+@Component
+@Slf4j
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingExecutor(LoginProperties loginProperties) {
+        this.executor = new ThreadPoolExecutor(
+                loginProperties.getHashingThreads(),
+                loginProperties.getHashingThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loginProperties.getHashingQueueCapacity()),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Run the task on the hashing pool.
+     *
+     * @param task the task to run.
+     * @return a future completed with the result of the task.
+     * @throws RejectedExecutionException when the pool and its queue are full.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, this.executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package com.digitalfactory.bookstore.seed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Instant;
+
+@ConfigurationProperties(prefix = "seed")
+@Data
+public class SeedProperties {
+
+    // drives every generated value, the same seed and sizes give the same rows
+    private long seed = 42;
+
+    private int categories = 20;
+
+    private int books = 50_000;
+
+    // the first one is the admin, the others customers
+    private int users = 100_000;
+
+    private long transactions = 2_000_000;
+
+    // skew of title and customer popularity, 0 is uniform, around 1 a few bestsellers take most of the borrows
+    private double zipfExponent = 1.0;
+
+    // borrows are dated over the year before, fixed rather than now so the dates are reproducible too
+    private Instant until = Instant.parse("2026-01-01T00:00:00Z");
+
+    // rows per multi-row insert statement
+    private int batchSize = 1000;
+
+    // insert statements running at once, keep it below the connection pool size
+    private int threads = 4;
+
+    // of every generated user, hashed once
+    private String password = "password";
+
+}
@@ -0,0 +1,163 @@
+package com.digitalfactory.bookstore.seed;
+
+import com.digitalfactory.bookstore.service.enums.UserType;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The rows of a synthetic catalog, every one a function of the seed and its id only, so they can be generated in any
+ * order and on any number of threads and still come out the same.
+ *
+ * Borrows pick titles and customers from Zipf distributions, shuffled so the popular ones are spread over the ids.
+ */
+public class SyntheticData {
+
+    private static final String[] ADJECTIVES = {"Silent", "Broken", "Hidden", "Last", "Golden", "Dark", "Lost",
+            "Burning", "Frozen", "Secret", "Crimson", "Empty", "Distant", "Wild", "Quiet", "Bitter", "Endless",
+            "Little", "Northern", "Shattered"};
+
+    private static final String[] NOUNS = {"River", "Garden", "Kingdom", "Winter", "Mirror", "Empire", "Harbor",
+            "Storm", "Letter", "Forest", "Promise", "Shadow", "Island", "Witness", "Orchard", "Tower", "Voyage",
+            "Daughter", "Machine", "Desert"};
+
+    private static final String[] FIRST_NAMES = {"Amira", "James", "Layla", "Omar", "Sofia", "Hassan", "Emma",
+            "Youssef", "Clara", "Karim", "Nadia", "Peter", "Mona", "Daniel", "Salma", "Victor", "Hana", "Tarek"};
+
+    private static final String[] LAST_NAMES = {"Hassan", "Stone", "Farouk", "Miller", "Nasser", "Grant", "Saleh",
+            "Fischer", "Mansour", "Reed", "Kamal", "Novak", "Zaki", "Hart", "Ibrahim", "Moreau"};
+
+    private static final String[] CITIES = {"cairo-egypt", "alexandria-egypt", "giza-egypt", "luxor-egypt",
+            "aswan-egypt", "mansoura-egypt", "tanta-egypt", "suez-egypt"};
+
+    private static final String[] CATEGORIES = {"novel", "crime", "mystery", "romantic", "horror", "fantasy",
+            "history", "science", "poetry", "travel", "biography", "thriller", "children", "philosophy", "drama",
+            "adventure", "humor", "religion", "art", "cooking"};
+
+    private static final long LOAN = Duration.ofDays(14).toMillis();
+
+    private static final long YEAR = Duration.ofDays(365).toMillis();
+
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    // salts keep the rows of different tables with the same id independent
+    private static final long BOOK_SALT = 0x13198A2E03707344L;
+    private static final long USER_SALT = 0xA4093822299F31D0L;
+    private static final long TRANSACTION_SALT = 0x082EFA98EC4E6C89L;
+
+    private final SeedProperties properties;
+
+    private final Zipf books;
+
+    private final Zipf users;
+
+    public SyntheticData(SeedProperties properties) {
+        this.properties = properties;
+        this.books = new Zipf(properties.getBooks(), properties.getZipfExponent(), new SplittableRandom(properties.getSeed() ^ BOOK_SALT));
+        // the admin does not borrow
+        this.users = new Zipf(properties.getUsers() - 1, properties.getZipfExponent(), new SplittableRandom(properties.getSeed() ^ USER_SALT));
+    }
+
+    public CategoryRow category(long id) {
+        String name = CATEGORIES[(int) ((id - 1) % CATEGORIES.length)];
+        return new CategoryRow(id, id > CATEGORIES.length ? name + "-" + (id - 1) / CATEGORIES.length : name);
+    }
+
+    public BookRow book(long id) {
+        SplittableRandom random = random(BOOK_SALT, id);
+        String name = "The " + pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + (random.nextInt(4) == 0 ? " " + (random.nextInt(9) + 2) : "");
+        String writer = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+        return new BookRow(id, random.nextLong(properties.getCategories()) + 1, name, writer, random.nextInt(11));
+    }
+
+    public UserRow user(long id) {
+        SplittableRandom random = random(USER_SALT, id);
+        boolean admin = id == 1;
+        String username = admin ? "admin" : "user-" + id;
+        return new UserRow(id, username, "010" + digits(random, 8), username + "@example.com",
+                (admin ? UserType.ADMIN : UserType.CUSTOMER).getValue(), digits(random, 14), pick(random, CITIES),
+                admin ? List.of("ROLE_USER", "ROLE_ADMIN") : List.of("ROLE_USER"));
+    }
+
+    public TransactionRow transaction(long id) {
+        SplittableRandom random = random(TRANSACTION_SALT, id);
+        long until = properties.getUntil().toEpochMilli();
+        long trxDate = until - random.nextLong(YEAR);
+        long receivedDate = trxDate + random.nextLong(1, 21) * DAY;
+        // the most recent borrows are still out
+        return new TransactionRow(id, users.sample(random) + 2, books.sample(random) + 1,
+                new Timestamp(trxDate + LOAN), new Timestamp(trxDate),
+                receivedDate < until ? new Timestamp(receivedDate) : null);
+    }
+
+    private SplittableRandom random(long salt, long id) {
+        return new SplittableRandom(properties.getSeed() ^ salt ^ (id * 0x9E3779B97F4A7C15L));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String digits(SplittableRandom random, int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Ranks drawn with probability proportional to {@code 1 / rank^exponent}, mapped through a fixed shuffle to
+     * zero-based indexes.
+     */
+    private static final class Zipf {
+
+        private final double[] cumulative;
+
+        private final int[] indexes;
+
+        Zipf(int size, double exponent, SplittableRandom shuffle) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int rank = 0; rank < size; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < size; rank++) {
+                cumulative[rank] /= sum;
+            }
+            indexes = new int[size];
+            for (int i = 0; i < size; i++) {
+                indexes[i] = i;
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = shuffle.nextInt(i + 1);
+                int swap = indexes[i];
+                indexes[i] = indexes[j];
+                indexes[j] = swap;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            return indexes[Math.min(rank < 0 ? -rank - 1 : rank, indexes.length - 1)];
+        }
+    }
+
+    public record CategoryRow(long id, String name) {
+    }
+
+    public record BookRow(long id, long categoryId, String name, String writerName, int amount) {
+    }
+
+    public record UserRow(long id, String username, String phone, String email, String type, String civilId,
+                          String address, List<String> roles) {
+    }
+
+    public record TransactionRow(long id, long userId, long bookId, Timestamp returnDate, Timestamp trxDate,
+                                 Timestamp receivedDate) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.digitalfactory.bookstore.seed;
+
+import com.digitalfactory.bookstore.config.ExecutionThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * Fills an empty database with {@link SyntheticData} for capacity testing: {@code --spring.profiles.active=seed}, sized
+ * with the {@code seed.*} properties.
+ *
+ * Rows go in as multi-row inserts straight through JDBC, batches of each table inserted in parallel. The id sequences
+ * are moved past the generated ids afterwards so the application keeps allocating its own.
+ */
+@Component
+@Profile(SyntheticDataGenerator.PROFILE)
+public class SyntheticDataGenerator implements CommandLineRunner {
+
+    public static final String PROFILE = "seed";
+
+    private final Logger log = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final SeedProperties seedProperties;
+
+    private final ExecutionThreads executionThreads;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, SeedProperties seedProperties,
+                                  ExecutionThreads executionThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.seedProperties = seedProperties;
+        this.executionThreads = executionThreads;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (seedProperties.getUsers() < 2) {
+            throw new IllegalStateException("seed.users must leave at least one customer besides the admin");
+        }
+        Long books = jdbcTemplate.queryForObject("select count(*) from book", Long.class);
+        if (books != null && books > 0) {
+            log.info("database already holds {} books, not seeding", books);
+            return;
+        }
+        long begin = System.nanoTime();
+        SyntheticData data = new SyntheticData(seedProperties);
+        // one hash for everybody, encoding is deliberately slow
+        String password = passwordEncoder.encode(seedProperties.getPassword());
+        ExecutorService executor = Executors.newFixedThreadPool(seedProperties.getThreads(), executionThreads.threadFactory("seed-"));
+        try {
+            insert(executor, "book_category (id, name, version)", seedProperties.getCategories(), id -> {
+                SyntheticData.CategoryRow row = data.category(id);
+                return Collections.singletonList(new Object[]{row.id(), row.name(), 0});
+            });
+            insert(executor, "book (id, book_category_id, name, writer_name, amount, version)", seedProperties.getBooks(), id -> {
+                SyntheticData.BookRow row = data.book(id);
+                return Collections.singletonList(new Object[]{row.id(), row.categoryId(), row.name(), row.writerName(), row.amount(), 0});
+            });
+            insert(executor, "users (id, username, password, phone, email, type, civil_id, address)", seedProperties.getUsers(), id -> {
+                SyntheticData.UserRow row = data.user(id);
+                return Collections.singletonList(new Object[]{row.id(), row.username(), password, row.phone(), row.email(), row.type(),
+                        row.civilId(), row.address()});
+            });
+            insert(executor, "user_roles (user_id, roles)", seedProperties.getUsers(), id ->
+                    data.user(id).roles().stream().map(role -> new Object[]{id, role}).toList());
+            insert(executor, "transaction (id, user_id, book_id, return_date, trx_date, received_date)", seedProperties.getTransactions(), id -> {
+                SyntheticData.TransactionRow row = data.transaction(id);
+                return Collections.singletonList(new Object[]{row.id(), row.userId(), row.bookId(), row.returnDate(), row.trxDate(),
+                        row.receivedDate()});
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        restartSequence("book_category_seq", seedProperties.getCategories());
+        restartSequence("book_seq", seedProperties.getBooks());
+        restartSequence("users_seq", seedProperties.getUsers());
+        restartSequence("transaction_seq", seedProperties.getTransactions());
+        log.info("seeded {} categories, {} books, {} users and {} transactions in {} s", seedProperties.getCategories(),
+                seedProperties.getBooks(), seedProperties.getUsers(), seedProperties.getTransactions(),
+                (System.nanoTime() - begin) / 1_000_000_000);
+    }
+
+    /**
+     * Insert the rows generated for ids 1 to {@code count}, one multi-row statement per batch of ids.
+     *
+     * @param table the table and its columns.
+     * @param rows  the rows of an id, each with a value per column.
+     */
+    private void insert(ExecutorService executor, String table, long count, LongFunction<List<Object[]>> rows)
+            throws InterruptedException, ExecutionException {
+        long begin = System.nanoTime();
+        List<Future<?>> batches = new ArrayList<>();
+        for (long first = 1; first <= count; first += seedProperties.getBatchSize()) {
+            long from = first;
+            long to = Math.min(count, first + seedProperties.getBatchSize() - 1);
+            batches.add(executor.submit(() -> {
+                List<Object> args = new ArrayList<>();
+                StringBuilder sql = new StringBuilder("insert into ").append(table).append(" values ");
+                for (long id = from; id <= to; id++) {
+                    for (Object[] row : rows.apply(id)) {
+                        if (!args.isEmpty()) {
+                            sql.append(',');
+                        }
+                        sql.append('(').append("?,".repeat(row.length - 1)).append("?)");
+                        Collections.addAll(args, row);
+                    }
+                }
+                jdbcTemplate.update(sql.toString(), args.toArray());
+            }));
+        }
+        for (Future<?> batch : batches) {
+            batch.get();
+        }
+        log.debug("inserted {} into {} in {} ms", count, table, (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    private void restartSequence(String sequence, long lastId) {
+        // past a whole allocation block, the pooled optimizer hands out ids below the value it reads
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (lastId + 51));
+    }
+}
@@ -3,6 +3,7 @@ package com.digitalfactory.bookstore.service;
 import com.digitalfactory.bookstore.domain.BookCategory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 import java.util.Optional;
@@ -39,6 +40,16 @@ public interface BookCategoryService {
      */
     Page<BookCategory> findAll(Pageable pageable);
 
+    /**
+     * Get the book Categories following the given id, without counting.
+     *
+     * @param afterId id of the last book Category of the previous slice.
+     * @param size the number of book Categories to return.
+     * @return the slice of entities.
+     */
+    Slice<BookCategory> findAllAfter(Long afterId, int size);
+
+
     /**
      * Get the "id" book Category.
      *
@@ -47,6 +58,13 @@ public interface BookCategoryService {
      */
     Optional<BookCategory> findOne(Long id);
 
+    /**
+     * Get a version of all the book Categories, which changes whenever any of them is created, updated or deleted.
+     *
+     * @return the catalog version.
+     */
+    String catalogVersion();
+
     /**
      * Delete the "id" book category.
      *
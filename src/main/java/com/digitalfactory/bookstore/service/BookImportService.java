@@ -0,0 +1,25 @@
+package com.digitalfactory.bookstore.service;
+
+import com.digitalfactory.bookstore.service.dto.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface BookImportService {
+    /**
+     * Import books from a CSV with a header line naming the columns name, writer_name, category and amount.
+     * Titles already in the catalog, by name and writer, get their amount replaced.
+     *
+     * @param csv the file content, read as a stream.
+     * @return the import report.
+     */
+    ImportReport importCsv(InputStream csv) throws IOException;
+
+    /**
+     * Import books from newline delimited JSON objects with the same fields as the CSV import.
+     *
+     * @param ndjson the file content, read as a stream.
+     * @return the import report.
+     */
+    ImportReport importNdjson(InputStream ndjson) throws IOException;
+}
@@ -1,11 +1,14 @@
 package com.digitalfactory.bookstore.service;
 
 import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.service.dto.BookSuggestion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
     /**
@@ -39,6 +42,23 @@ public interface BookService {
      */
     Page<Book> findAll(Pageable pageable);
 
+    /**
+     * Get the books following the given id, without counting.
+     *
+     * @param afterId id of the last book of the previous slice.
+     * @param size the number of books to return.
+     * @return the slice of entities.
+     */
+    Slice<Book> findAllAfter(Long afterId, int size);
+
+
+    /**
+     * Stream all the books one by one inside a read-only transaction.
+     *
+     * @param consumer receives each entity as it is read.
+     */
+    void streamAll(Consumer<Book> consumer);
+
     /**
      * Get the "id" book.
      *
@@ -47,6 +67,13 @@ public interface BookService {
      */
     Optional<Book> findOne(Long id);
 
+    /**
+     * Get a version of all the books, which changes whenever any of them is created, updated or deleted.
+     *
+     * @return the catalog version.
+     */
+    String catalogVersion();
+
     /**
      * Delete the "id" book.
      *
@@ -57,14 +84,66 @@ public interface BookService {
     /**
      * find available books with remaining amounts
      *
-     * @return list of entity
+     * @param pageable the pagination information.
+     * @return page of entities
      */
-    List<Book> findAvailableBooks();
+    Page<Book> findAvailableBooks(Pageable pageable);
 
     /**
      * find available books with remaining amounts
      * @param book_category_id id of category to filter
-     * @return list of entity
+     * @param pageable the pagination information.
+     * @return page of entities
+     */
+    Page<Book> findAvailableBooksByCategory(Long book_category_id, Pageable pageable);
+
+    /**
+     * reserve one copy of the book with a single conditional update
+     *
+     * @param id id of the book
+     * @return true when a copy was reserved, false when the book is not available
+     */
+    boolean reserveCopy(Long id);
+
+    /**
+     * release one copy of the book back to stock
+     *
+     * @param id id of the book
+     * @return true when the book exists
+     */
+    boolean releaseCopy(Long id);
+
+    /**
+     * reserve one copy for each of the given books in a single batch of conditional updates
+     *
+     * @param ids ids of the books, one entry per copy
+     * @return for each entry, true when a copy was reserved
+     */
+    boolean[] reserveCopies(List<Long> ids);
+
+    /**
+     * release one copy for each of the given books in a single batch of updates
+     *
+     * @param ids ids of the books, one entry per copy
+     * @return for each entry, true when the book exists
+     */
+    boolean[] releaseCopies(List<Long> ids);
+
+    /**
+     * Search the books by name and writer, best match first.
+     *
+     * @param query the words to look for, prefixes and single typos match too.
+     * @param pageable the pagination information, its sort is ignored.
+     * @return the page of entities.
+     */
+    Page<Book> search(String query, Pageable pageable);
+
+    /**
+     * Suggest titles and writers starting with what has been typed, the most available first.
+     *
+     * @param prefix the text typed so far.
+     * @param limit how many suggestions.
+     * @return the suggestions.
      */
-    List<Book> findAvailableBooksByCategory(Long book_category_id);
+    List<BookSuggestion> autocomplete(String prefix, int limit);
 }
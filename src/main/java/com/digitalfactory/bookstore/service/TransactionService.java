@@ -1,11 +1,16 @@
 package com.digitalfactory.bookstore.service;
 
 import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.service.dto.TransactionResult;
+import com.digitalfactory.bookstore.service.dto.TransactionView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface TransactionService {
     /**
@@ -39,6 +44,50 @@ public interface TransactionService {
      */
     Page<Transaction> findAll(Pageable pageable);
 
+    /**
+     * Get the transactions older than the given position, newest first, without counting.
+     *
+     * @param trx_date transaction date of the last transaction of the previous slice, null for the first slice.
+     * @param id id of the last transaction of the previous slice.
+     * @param size the number of transactions to return.
+     * @return the slice of read models.
+     */
+    Slice<TransactionView> findAllBefore(Timestamp trx_date, Long id, int size);
+
+
+    /**
+     * Get all the transactions as read models.
+     *
+     * @return the list of read models.
+     */
+    List<TransactionView> findAllViews();
+
+    /**
+     * Get all the transactions as read models.
+     *
+     * @param pageable the pagination information.
+     * @return the page of read models.
+     */
+    Page<TransactionView> findAllViews(Pageable pageable);
+
+    /**
+     * Stream all the transactions one by one as read models inside a read-only transaction.
+     *
+     * @param consumer receives each read model as it is read.
+     */
+    void streamAll(Consumer<TransactionView> consumer);
+
+    /**
+     * Stream the transactions matching the filters, ordered by id, from one repeatable-read snapshot so a long
+     * export is consistent even while borrows and returns go on.
+     *
+     * @param from     earliest trx_date, inclusive, or null.
+     * @param to       latest trx_date, exclusive, or null.
+     * @param userId   only the transactions of this user, or null for all users.
+     * @param consumer receives each read model as it is read.
+     */
+    void exportAll(Timestamp from, Timestamp to, Long userId, Consumer<TransactionView> consumer);
+
     /**
      * Get the "id" transaction.
      *
@@ -47,6 +96,14 @@ public interface TransactionService {
      */
     Optional<Transaction> findOne(Long id);
 
+    /**
+     * Get the "id" transaction as read model.
+     *
+     * @param id the id of the entity.
+     * @return the read model.
+     */
+    Optional<TransactionView> findOneView(Long id);
+
     /**
      * Delete the "id" transaction.
      *
@@ -67,4 +124,20 @@ public interface TransactionService {
      * @param transaction the entity with data
      */
     String returnBook(Transaction transaction);
+
+    /**
+     * user borrow a basket of books in one database transaction
+     *
+     * @param transactions the entities with data, one per copy
+     * @return the result of each entity, in order
+     */
+    List<TransactionResult> borrowBooks(List<Transaction> transactions);
+
+    /**
+     * user return a basket of books in one database transaction
+     *
+     * @param transactions the entities with data, one per copy
+     * @return the result of each entity, in order
+     */
+    List<TransactionResult> returnBooks(List<Transaction> transactions);
 }
@@ -61,4 +61,21 @@ public interface UserService {
      * @return entity
      */
     User findByUserName(String userName);
+
+    /**
+     * find User By User Name, served from the user cache when present
+     *
+     * @param userName value
+     * @return entity, empty when no user has this name
+     */
+    Optional<User> findOneByUserName(String userName);
+
+    /**
+     * Replace the password hash of a user.
+     *
+     * @param userName value
+     * @param encodedPassword the new password, already encoded
+     * @return the updated entity
+     */
+    User updatePassword(String userName, String encodedPassword);
 }
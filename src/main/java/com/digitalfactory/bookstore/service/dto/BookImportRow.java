@@ -0,0 +1,26 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One title of a catalog import, the category is given by name.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportRow {
+
+    private String name;
+
+    private String writer_name;
+
+    private String category;
+
+    private BigDecimal amount;
+}
@@ -0,0 +1,22 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One autocomplete suggestion, a title or a writer, with the copies available under it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestion {
+
+    private String text;
+
+    private String type;
+
+    private long amount;
+}
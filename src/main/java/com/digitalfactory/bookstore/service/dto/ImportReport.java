@@ -0,0 +1,23 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a catalog import. Only the first errors are listed, the counts cover every row.
+ */
+@Data
+public class ImportReport {
+
+    private long rows;
+
+    private long inserted;
+
+    private long updated;
+
+    private long rejected;
+
+    private List<String> errors = new ArrayList<>();
+}
@@ -0,0 +1,23 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Copies of a book available after a change, pushed to availability stream subscribers. A deleted book is sent with
+ * no category and no copies.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChange {
+
+    private Long bookId;
+
+    private Long categoryId;
+
+    private BigDecimal amount;
+}
@@ -0,0 +1,22 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a borrow or return basket.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionResult {
+
+    private Long bookId;
+
+    private Long transactionId;
+
+    private String result;
+}
@@ -0,0 +1,34 @@
+package com.digitalfactory.bookstore.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Read model of a transaction, loaded with one select joining the user and the book columns it shows.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "userId", "username", "bookId", "bookName", "return_date", "trx_date", "received_date"})
+public class TransactionView {
+
+    private Long id;
+
+    private Long userId;
+
+    private String username;
+
+    private Long bookId;
+
+    private String bookName;
+
+    private Timestamp return_date;
+
+    private Timestamp trx_date;
+
+    private Timestamp received_date;
+}
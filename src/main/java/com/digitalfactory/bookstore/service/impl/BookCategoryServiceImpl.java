@@ -1,13 +1,18 @@
 package com.digitalfactory.bookstore.service.impl;
 
 import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.events.CatalogVersions;
 import com.digitalfactory.bookstore.repository.BookCategoryRepository;
 import com.digitalfactory.bookstore.service.BookCategoryService;
+import jakarta.persistence.EntityManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -22,14 +27,22 @@ public class BookCategoryServiceImpl implements BookCategoryService {
 
     private final BookCategoryRepository bookCategoryRepository;
 
+    private final EntityManagerFactory entityManagerFactory;
 
-    public BookCategoryServiceImpl(BookCategoryRepository bookCategoryRepository) {
+    private final CatalogVersions catalogVersions;
+
+    public BookCategoryServiceImpl(BookCategoryRepository bookCategoryRepository, EntityManagerFactory entityManagerFactory,
+                                   CatalogVersions catalogVersions) {
         this.bookCategoryRepository = bookCategoryRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.catalogVersions = catalogVersions;
     }
     @Override
     public BookCategory save(BookCategory bookCategory) {
         log.debug("Request to save book category: {}", bookCategory);
-        return bookCategoryRepository.save(bookCategory);
+        BookCategory result = bookCategoryRepository.save(bookCategory);
+        evict(result.getId());
+        return result;
     }
 
     @Override
@@ -56,15 +69,33 @@ public class BookCategoryServiceImpl implements BookCategoryService {
         return bookCategoryRepository.findAll(pageable);
     }
 
+    @Override
+    public Slice<BookCategory> findAllAfter(Long afterId, int size) {
+        log.debug("Request to get book categories after : {}", afterId);
+        return bookCategoryRepository.findAllAfter(afterId, PageRequest.ofSize(size));
+    }
+
     @Override
     public Optional<BookCategory> findOne(Long id) {
         log.debug("Request to get book category : {}", id);
         return bookCategoryRepository.findById(id);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String catalogVersion() {
+        return catalogVersions.categories();
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete book category : {}", id);
         bookCategoryRepository.deleteById(id);
+        evict(id);
+    }
+
+    private void evict(Long id) {
+        CacheEvictions.evictAfterCommit(entityManagerFactory, BookCategory.class, List.of(id));
+        CacheEvictions.afterCompletion(catalogVersions::categoriesChanged);
     }
 }
@@ -0,0 +1,256 @@
+package com.digitalfactory.bookstore.service.impl;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.events.CatalogVersions;
+import com.digitalfactory.bookstore.events.StockChangeBroadcaster;
+import com.digitalfactory.bookstore.inventory.InventoryLedger;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.search.BookAutocomplete;
+import com.digitalfactory.bookstore.search.BookSearchIndex;
+import com.digitalfactory.bookstore.service.BookImportService;
+import com.digitalfactory.bookstore.service.dto.BookImportRow;
+import com.digitalfactory.bookstore.service.dto.ImportReport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Imports the catalog in chunks, each chunk in its own transaction: one lookup of the titles already present, a
+ * JDBC batch for their amounts and batched inserts for the new ones. Only the current chunk is held in memory.
+ */
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    // the width of the name and writer_name columns
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final String UPDATE_AMOUNT = "update book set amount = ?, version = version + 1 where id = ?";
+
+    private final Logger log = LoggerFactory.getLogger(BookImportServiceImpl.class);
+
+    private final BookRepository bookRepository;
+
+    private final BookCategoryRepository bookCategoryRepository;
+
+    private final EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BookAutocomplete bookAutocomplete;
+
+    private final InventoryLedger inventoryLedger;
+
+    private final StockChangeBroadcaster stockChangeBroadcaster;
+
+    private final CatalogVersions catalogVersions;
+
+    private final CsvMapper csvMapper = CsvMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    public BookImportServiceImpl(BookRepository bookRepository, BookCategoryRepository bookCategoryRepository,
+                                 EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                                 BookSearchIndex bookSearchIndex, BookAutocomplete bookAutocomplete,
+                                 InventoryLedger inventoryLedger, StockChangeBroadcaster stockChangeBroadcaster,
+                                 CatalogVersions catalogVersions) {
+        this.bookRepository = bookRepository;
+        this.bookCategoryRepository = bookCategoryRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.inventoryLedger = inventoryLedger;
+        this.stockChangeBroadcaster = stockChangeBroadcaster;
+        this.catalogVersions = catalogVersions;
+    }
+
+    @Override
+    public ImportReport importCsv(InputStream csv) throws IOException {
+        log.debug("Request to import books from csv");
+        return importRows(csvMapper.readerFor(BookImportRow.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(csv));
+    }
+
+    @Override
+    public ImportReport importNdjson(InputStream ndjson) throws IOException {
+        log.debug("Request to import books from ndjson");
+        return importRows(objectMapper.readerFor(BookImportRow.class).readValues(ndjson));
+    }
+
+    private ImportReport importRows(MappingIterator<BookImportRow> rows) throws IOException {
+        Map<String, Long> categories = bookCategoryRepository.findAll().stream()
+                .collect(Collectors.toMap(BookCategory::getName, BookCategory::getId, (first, second) -> first));
+        ImportReport report = new ImportReport();
+        List<BookImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (rows) {
+            while (rows.hasNextValue()) {
+                BookImportRow row = rows.nextValue();
+                long rowNumber = report.getRows() + 1;
+                report.setRows(rowNumber);
+                String error = validate(row, categories);
+                if (error != null) {
+                    reject(report, 1, "row " + rowNumber + ": " + error);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, categories, report);
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // the parser cannot resync after a malformed row, keep what was read so far and stop
+            reject(report, 0, "row " + (report.getRows() + 1) + ": malformed, import stopped");
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, categories, report);
+        }
+        log.debug("Imported books : {}", report);
+        return report;
+    }
+
+    private static String validate(BookImportRow row, Map<String, Long> categories) {
+        if (!StringUtils.hasText(row.getName())) {
+            return "NameRequired";
+        }
+        if (row.getName().length() > MAX_TEXT_LENGTH) {
+            return "NameTooLong";
+        }
+        if (!StringUtils.hasText(row.getWriter_name())) {
+            return "WriterNameRequired";
+        }
+        if (row.getWriter_name().length() > MAX_TEXT_LENGTH) {
+            return "WriterNameTooLong";
+        }
+        if (row.getCategory() == null || !categories.containsKey(row.getCategory())) {
+            return "CategoryNotFound";
+        }
+        if (row.getAmount() == null || row.getAmount().compareTo(BigDecimal.ZERO) < 0) {
+            return "InvalidAmount";
+        }
+        return null;
+    }
+
+    private void importChunk(List<BookImportRow> chunk, Map<String, Long> categories, ImportReport report) {
+        try {
+            long[] counts = transactionTemplate.execute(status -> writeChunk(chunk, categories));
+            report.setInserted(report.getInserted() + counts[0]);
+            report.setUpdated(report.getUpdated() + counts[1]);
+        } catch (RuntimeException e) {
+            // flushing the entity manager throws untranslated persistence exceptions, the chunk is rolled back either way
+            log.warn("Import of {} books failed", chunk.size(), e);
+            long last = report.getRows();
+            reject(report, chunk.size(), "rows up to " + last + ": " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private long[] writeChunk(List<BookImportRow> chunk, Map<String, Long> categories) {
+        // imported titles are not worth a place in the second-level cache
+        entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+
+        Map<String, List<Long>> existing = new HashMap<>();
+        List<String> names = chunk.stream().map(BookImportRow::getName).distinct().collect(Collectors.toList());
+        for (Object[] key : bookRepository.findKeysByNameIn(names)) {
+            existing.computeIfAbsent(key((String) key[1], (String) key[2]), k -> new ArrayList<>()).add((Long) key[0]);
+        }
+
+        Map<String, Book> inserted = new HashMap<>();
+        List<Object[]> amounts = new ArrayList<>();
+        List<Long> updatedIds = new ArrayList<>();
+        long updated = 0;
+        for (BookImportRow row : chunk) {
+            String key = key(row.getName(), row.getWriter_name());
+            List<Long> ids = existing.get(key);
+            Book pending = inserted.get(key);
+            if (ids != null) {
+                for (Long id : ids) {
+                    amounts.add(new Object[]{row.getAmount(), id});
+                    updatedIds.add(id);
+                    bookAutocomplete.setAmount(id, row.getAmount());
+                }
+                updated++;
+            } else if (pending != null) {
+                // the same new title twice in the file, the later row wins
+                pending.setAmount(row.getAmount());
+                updated++;
+            } else {
+                Book book = Book.builder()
+                        .name(row.getName())
+                        .writer_name(row.getWriter_name())
+                        .amount(row.getAmount())
+                        .book_category(entityManager.getReference(BookCategory.class, categories.get(row.getCategory())))
+                        .build();
+                entityManager.persist(book);
+                inserted.put(key, book);
+            }
+        }
+        // inserts go out in JDBC batches of hibernate.jdbc.batch_size
+        entityManager.flush();
+        inserted.values().forEach(book -> {
+            bookSearchIndex.update(book);
+            bookAutocomplete.update(book);
+        });
+        if (!amounts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_AMOUNT, amounts);
+            CacheEvictions.evictAfterCommit(entityManager.getEntityManagerFactory(), Book.class, updatedIds);
+            CacheEvictions.afterCompletion(() -> inventoryLedger.invalidate(updatedIds));
+        }
+        List<Long> changedIds = new ArrayList<>(updatedIds);
+        inserted.values().forEach(book -> changedIds.add(book.getId()));
+        CacheEvictions.afterCompletion(() -> {
+            catalogVersions.booksChanged();
+            stockChangeBroadcaster.changed(changedIds);
+        });
+        entityManager.clear();
+        return new long[]{inserted.size(), updated};
+    }
+
+    private static String key(String name, String writerName) {
+        return name + '\u0000' + writerName;
+    }
+
+    private static void reject(ImportReport report, int rows, String error) {
+        report.setRejected(report.getRejected() + rows);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(error);
+        }
+    }
+}
@@ -1,36 +1,92 @@
 package com.digitalfactory.bookstore.service.impl;
 
 import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.events.CatalogVersions;
+import com.digitalfactory.bookstore.events.StockChangeBroadcaster;
+import com.digitalfactory.bookstore.inventory.InventoryLedger;
 import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.search.BookAutocomplete;
+import com.digitalfactory.bookstore.search.BookSearchIndex;
 import com.digitalfactory.bookstore.service.BookService;
+import com.digitalfactory.bookstore.service.dto.BookSuggestion;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
+@Timed("bookstore.service")
 public class BookServiceImpl implements BookService {
 
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
+    private static final String RESERVE_COPY = "update book set amount = amount - 1, version = version + 1 where id = ? and amount > ?";
+
+    private static final String RELEASE_COPY = "update book set amount = amount + 1, version = version + 1 where id = ?";
+
     private final Logger log = LoggerFactory.getLogger(BookServiceImpl.class);
 
     private final BookRepository bookRepository;
 
+    private final EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final BookAutocomplete bookAutocomplete;
 
-    public BookServiceImpl(BookRepository bookRepository) {
+    private final InventoryLedger inventoryLedger;
+
+    private final StockChangeBroadcaster stockChangeBroadcaster;
+
+    private final CatalogVersions catalogVersions;
+
+    public BookServiceImpl(BookRepository bookRepository, EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                           BookSearchIndex bookSearchIndex, BookAutocomplete bookAutocomplete, InventoryLedger inventoryLedger,
+                           StockChangeBroadcaster stockChangeBroadcaster, CatalogVersions catalogVersions) {
         this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.inventoryLedger = inventoryLedger;
+        this.stockChangeBroadcaster = stockChangeBroadcaster;
+        this.catalogVersions = catalogVersions;
     }
     @Override
     public Book save(Book book) {
         log.debug("Request to save book : {}", book);
-        return bookRepository.save(book);
+        if (book.getBook_category() != null && book.getBook_category().getId() != null) {
+            // requests only carry the category id, an unversioned copy cannot be merged; served from the cache
+            book.setBook_category(entityManager.find(BookCategory.class, book.getBook_category().getId()));
+        }
+        Book result = bookRepository.save(book);
+        evict(List.of(result.getId()));
+        bookSearchIndex.update(result);
+        bookAutocomplete.update(result);
+        return result;
     }
 
     @Override
@@ -60,35 +116,133 @@ public class BookServiceImpl implements BookService {
         return bookRepository.findAll(pageable);
     }
 
+    @Override
+    public Slice<Book> findAllAfter(Long afterId, int size) {
+        log.debug("Request to get books after : {}", afterId);
+        return bookRepository.findAllAfter(afterId, PageRequest.ofSize(size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Book> consumer) {
+        log.debug("Request to stream all books");
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            AtomicInteger count = new AtomicInteger();
+            books.forEach(book -> {
+                consumer.accept(book);
+                // drop what has been written so the persistence context does not grow with the table
+                if (count.incrementAndGet() % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            });
+        }
+    }
+
     @Override
     public Optional<Book> findOne(Long id) {
         log.debug("Request to get book : {}", id);
         return bookRepository.findById(id);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String catalogVersion() {
+        return catalogVersions.books();
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete book : {}", id);
         bookRepository.deleteById(id);
+        evict(List.of(id));
+        bookSearchIndex.remove(id);
+        bookAutocomplete.remove(id);
     }
 
     @Override
-    public List<Book> findAvailableBooks() {
-        List<Book> books = findAll();
-        books = books
-                .stream()
-                .filter(book->book.getAmount().compareTo(BigDecimal.ZERO)>0)
-                .collect(Collectors.toList());
-        return books;
+    public Page<Book> findAvailableBooks(Pageable pageable) {
+        log.debug("Request to get available books : {}", pageable);
+        return bookRepository.findAvailable(pageable);
     }
 
     @Override
-    public List<Book> findAvailableBooksByCategory(Long book_category_id) {
-        List<Book> books = bookRepository.findAllByBook_category_Id(book_category_id);
-        books = books
-                .stream()
-                .filter(book->book.getAmount().compareTo(BigDecimal.ZERO)>0)
-                .collect(Collectors.toList());
-        return books;
+    public Page<Book> findAvailableBooksByCategory(Long book_category_id, Pageable pageable) {
+        log.debug("Request to get available books of category : {}, {}", book_category_id, pageable);
+        return bookRepository.findAvailableByCategory(book_category_id, pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> search(String query, Pageable pageable) {
+        log.debug("Request to search books : {}, {}", query, pageable);
+        Page<Long> ids = bookSearchIndex.search(query, pageable);
+        // loaded through the second-level cache, then put back in relevance order
+        Map<Long, Book> books = bookRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> ranked = ids.getContent().stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return new PageImpl<>(ranked, pageable, ids.getTotalElements());
+    }
+
+    @Override
+    public List<BookSuggestion> autocomplete(String prefix, int limit) {
+        return bookAutocomplete.suggest(prefix, limit);
+    }
+
+    @Override
+    public boolean reserveCopy(Long id) {
+        log.debug("Request to reserve copy of book : {}", id);
+        return batchUpdate(RESERVE_COPY, -1, List.of(id))[0];
+    }
+
+    @Override
+    public boolean releaseCopy(Long id) {
+        log.debug("Request to release copy of book : {}", id);
+        return batchUpdate(RELEASE_COPY, 1, List.of(id))[0];
+    }
+
+    @Override
+    public boolean[] reserveCopies(List<Long> ids) {
+        log.debug("Request to reserve copies of books : {}", ids);
+        return batchUpdate(RESERVE_COPY, -1, ids);
+    }
+
+    @Override
+    public boolean[] releaseCopies(List<Long> ids) {
+        log.debug("Request to release copies of books : {}", ids);
+        return batchUpdate(RELEASE_COPY, 1, ids);
+    }
+
+    private boolean[] batchUpdate(String sql, int delta, List<Long> ids) {
+        // flush pending entity changes first, the batch goes straight to JDBC on the same connection
+        entityManager.flush();
+        int[][] counts = jdbcTemplate.batchUpdate(sql, ids, ids.size(), (ps, id) -> {
+            ps.setLong(1, id);
+            if (delta < 0) {
+                // copies taken by journaled borrows the database does not hold yet are not lent again
+                ps.setLong(2, inventoryLedger.unwrittenBorrows(id));
+            }
+        });
+        // JDBC bypasses the second-level cache, drop exactly the rows touched instead of the whole region
+        evict(ids);
+        boolean[] updated = new boolean[ids.size()];
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    bookAutocomplete.addAmount(ids.get(i), delta);
+                }
+                updated[i++] = count > 0;
+            }
+        }
+        return updated;
+    }
+
+    private void evict(List<Long> ids) {
+        CacheEvictions.evictAfterCommit(entityManager.getEntityManagerFactory(), Book.class, ids);
+        CacheEvictions.afterCompletion(() -> {
+            catalogVersions.booksChanged();
+            inventoryLedger.invalidate(ids);
+            stockChangeBroadcaster.changed(ids);
+        });
     }
 }
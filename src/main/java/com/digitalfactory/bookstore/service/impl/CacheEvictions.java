@@ -0,0 +1,36 @@
+package com.digitalfactory.bookstore.service.impl;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+/**
+ * Evicts cache entries once the surrounding transaction completes, so a concurrent reader cannot put the old row
+ * back between the eviction and the commit.
+ */
+final class CacheEvictions {
+
+    private CacheEvictions() {
+    }
+
+    static void evictAfterCommit(EntityManagerFactory entityManagerFactory, Class<?> type, Collection<?> ids) {
+        Cache cache = entityManagerFactory.getCache();
+        afterCompletion(() -> ids.forEach(id -> cache.evict(type, id)));
+    }
+
+    static void afterCompletion(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                eviction.run();
+            }
+        });
+    }
+}
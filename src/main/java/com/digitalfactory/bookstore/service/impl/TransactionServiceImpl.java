@@ -2,47 +2,104 @@ package com.digitalfactory.bookstore.service.impl;
 
 import com.digitalfactory.bookstore.domain.Book;
 import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.domain.User;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
+import com.digitalfactory.bookstore.inventory.InventoryLedger;
 import com.digitalfactory.bookstore.repository.TransactionRepository;
 import com.digitalfactory.bookstore.service.BookService;
 import com.digitalfactory.bookstore.service.TransactionService;
 import com.digitalfactory.bookstore.service.UserService;
+import com.digitalfactory.bookstore.service.dto.TransactionResult;
+import com.digitalfactory.bookstore.service.dto.TransactionView;
 import com.digitalfactory.bookstore.utils.SecurityUtils;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Service
 @Transactional
+@Timed("bookstore.service")
 public class TransactionServiceImpl implements TransactionService {
 
+    private static final int MAX_BASKET_SIZE = 100;
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    private static final String BOOK_NOT_AVAILABLE = "BookNotAvailable";
+
     private final Logger log = LoggerFactory.getLogger(TransactionServiceImpl.class);
 
     private final TransactionRepository transactionRepository;
 
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final InventoryLedger inventoryLedger;
+
+    private final Counter borrowsSucceeded;
+
+    private final Counter borrowsOutOfStock;
+
+    private final Counter borrowsFailed;
+
     @Autowired
     UserService userService;
 
     @Autowired
     BookService bookService;
 
-    public TransactionServiceImpl(TransactionRepository transactionRepository) {
+    public TransactionServiceImpl(TransactionRepository transactionRepository, EntityManager entityManager,
+                                  TransactionTemplate transactionTemplate, InventoryLedger inventoryLedger,
+                                  MeterRegistry meterRegistry) {
         this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.inventoryLedger = inventoryLedger;
+        this.borrowsSucceeded = borrows(meterRegistry, "success");
+        this.borrowsOutOfStock = borrows(meterRegistry, "out_of_stock");
+        this.borrowsFailed = borrows(meterRegistry, "failure");
+    }
+
+    private static Counter borrows(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bookstore.borrows")
+                .description("Books asked for, single or in a basket")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
     @Override
     public Transaction save(Transaction transaction) {
         log.debug("Request to save transaction : {}", transaction);
+        if (transaction.getBook() != null && transaction.getBook().getId() != null) {
+            // requests only carry the book id, an unversioned copy of the book cannot be merged
+            transaction.setBook(entityManager.getReference(Book.class, transaction.getBook().getId()));
+        }
         return transactionRepository.save(transaction);
     }
 
@@ -73,73 +130,306 @@ public class TransactionServiceImpl implements TransactionService {
         return transactionRepository.findAll(pageable);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<TransactionView> findAllViews() {
+        log.debug("Request to get all transaction views");
+        return transactionRepository.findAllViews();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<TransactionView> findAllViews(Pageable pageable) {
+        log.debug("Request to get all transaction views : {}", pageable);
+        return transactionRepository.findAllViews(pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<TransactionView> findAllBefore(Timestamp trx_date, Long id, int size) {
+        log.debug("Request to get transactions before : {}, {}", trx_date, id);
+        if (trx_date == null) {
+            return transactionRepository.findLatest(PageRequest.ofSize(size));
+        }
+        return transactionRepository.findAllBefore(trx_date, id, PageRequest.ofSize(size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<TransactionView> consumer) {
+        log.debug("Request to stream all transactions");
+        // read models are not managed, so the persistence context stays empty however long the stream is
+        try (Stream<TransactionView> transactions = transactionRepository.streamAllViews()) {
+            transactions.forEach(consumer);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportAll(Timestamp from, Timestamp to, Long userId, Consumer<TransactionView> consumer) {
+        log.debug("Request to export transactions : {}, {}, {}", from, to, userId);
+        StringBuilder jpql = new StringBuilder(TransactionRepository.SELECT_VIEW).append(" where 1 = 1");
+        if (from != null) {
+            jpql.append(" and t.trx_date >= :from");
+        }
+        if (to != null) {
+            jpql.append(" and t.trx_date < :to");
+        }
+        if (userId != null) {
+            jpql.append(" and u.id = :userId");
+        }
+        TypedQuery<TransactionView> query = entityManager.createQuery(jpql.append(" order by t.id").toString(), TransactionView.class)
+                .setHint(HINT_FETCH_SIZE, EXPORT_FETCH_SIZE);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        if (userId != null) {
+            query.setParameter("userId", userId);
+        }
+        try (Stream<TransactionView> transactions = query.getResultStream()) {
+            transactions.forEach(consumer);
+        }
+    }
+
     @Override
     public Optional<Transaction> findOne(Long id) {
         log.debug("Request to get transaction : {}", id);
         return transactionRepository.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<TransactionView> findOneView(Long id) {
+        log.debug("Request to get transaction view : {}", id);
+        return transactionRepository.findViewById(id);
+    }
+
     @Override
     public void delete(Long id) {
         log.debug("Request to delete transaction : {}", id);
         transactionRepository.deleteById(id);
     }
 
+    // borrows and returns open their own database transaction only when not written behind, so waiting for the
+    // journal never holds a connection
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public String borrowBook(Transaction transaction) throws BadRequestAlertException {
-        String userName = SecurityUtils.getCurrentUserLogin().get();
+        try {
+            String result = borrow(transaction);
+            borrowsSucceeded.increment();
+            return result;
+        } catch (BadRequestAlertException e) {
+            (BOOK_NOT_AVAILABLE.equals(e.getTitle()) ? borrowsOutOfStock : borrowsFailed).increment();
+            throw e;
+        } catch (RuntimeException e) {
+            borrowsFailed.increment();
+            throw e;
+        }
+    }
+
+    private String borrow(Transaction transaction) {
+        String userName = SecurityUtils.getCurrentUserLogin().orElse(null);
         if (userName == null) {
             throw new BadRequestAlertException("UserNotFound", "Transaction", null);
         }
-        if (transaction.getUser() == null && userName != null) {
-            transaction.setUser(userService.findByUserName(userName));
-        }
-        if (transaction.getBook() != null && transaction.getBook().getAmount() != null) {
-             if (transaction.getBook().getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                 throw new BadRequestAlertException("BookNotAvailable", "Transaction", null);
-             }
+        if (transaction.getBook() == null || transaction.getBook().getId() == null) {
+            throw new BadRequestAlertException("BookNotFound", "Transaction", null);
         }
         if (transaction.getReturn_date() == null) {
             throw new BadRequestAlertException("ToBorrowBookShouldNeedEnterReturnDate", "Transaction", null);
         }
-        transaction.setTrx_date(Timestamp.from(Instant.now()));
-        Transaction trx = save(transaction);
-        if (trx != null && trx.getId() > 0) {
-            Book book = bookService.findOne(transaction.getBook().getId()).get();
-            if (book != null) {
-                book.setAmount(book.getAmount().subtract(new BigDecimal(1)));
+        boolean ownUser = transaction.getUser() == null;
+        if (ownUser) {
+            transaction.setUser(userService.findByUserName(userName));
+        }
+        if (inventoryLedger.isWriteBehind()) {
+            Long userId = ownUser ? transaction.getUser().getId() : existingUserId(transaction.getUser());
+            if (!inventoryLedger.borrow(transaction.getBook().getId(), userId,
+                    transaction.getReturn_date()).join()) {
+                throw new BadRequestAlertException(BOOK_NOT_AVAILABLE, "Transaction", null);
             }
-            bookService.save(book);
+            return "Successful";
         }
-        return "Successful";
+        return transactionTemplate.execute(status -> {
+            // the conditional update is the availability check, so concurrent borrows can never oversell
+            if (!bookService.reserveCopy(transaction.getBook().getId())) {
+                throw new BadRequestAlertException(BOOK_NOT_AVAILABLE, "Transaction", null);
+            }
+            transaction.setTrx_date(Timestamp.from(Instant.now()));
+            save(transaction);
+            return "Successful";
+        });
     }
 
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public String returnBook(Transaction transaction) {
-        String userName = SecurityUtils.getCurrentUserLogin().get();
+        String userName = SecurityUtils.getCurrentUserLogin().orElse(null);
         if (userName == null) {
             throw new BadRequestAlertException("UserNotFound", "Transaction", null);
         }
-        if (transaction.getUser() == null && userName != null) {
-            transaction.setUser(userService.findByUserName(userName));
+        if (transaction.getBook() == null || transaction.getBook().getId() == null) {
+            throw new BadRequestAlertException("BookNotFound", "Transaction", null);
         }
-        if (transaction.getBook() != null && transaction.getBook().getAmount() != null) {
-            if (transaction.getBook().getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                throw new BadRequestAlertException("BookNotAvailable", "Transaction", null);
-            }
+        boolean ownUser = transaction.getUser() == null;
+        if (ownUser) {
+            transaction.setUser(userService.findByUserName(userName));
         }
         if (transaction.getReceived_date() == null) {
             transaction.setReceived_date(Timestamp.from(Instant.now()));
         }
-        transaction.setTrx_date(Timestamp.from(Instant.now()));
-        Transaction trx = save(transaction);
-        if (trx != null && trx.getId() > 0) {
-            Book book = bookService.findOne(transaction.getBook().getId()).get();
-            if (book != null) {
-                book.setAmount(book.getAmount().add(new BigDecimal(1)));
+        if (inventoryLedger.isWriteBehind()) {
+            Long userId = ownUser ? transaction.getUser().getId() : existingUserId(transaction.getUser());
+            if (!inventoryLedger.giveBack(transaction.getBook().getId(), userId,
+                    transaction.getReturn_date(), transaction.getReceived_date()).join()) {
+                throw new BadRequestAlertException("BookNotFound", "Transaction", null);
+            }
+            return "Successful";
+        }
+        return transactionTemplate.execute(status -> {
+            if (!bookService.releaseCopy(transaction.getBook().getId())) {
+                throw new BadRequestAlertException("BookNotFound", "Transaction", null);
+            }
+            transaction.setTrx_date(Timestamp.from(Instant.now()));
+            save(transaction);
+            return "Successful";
+        });
+    }
+
+    // the ledger answers before anything is written, an unknown user would only fail the write later
+    private Long existingUserId(User user) {
+        Long userId = user.getId();
+        if (userId == null || entityManager.find(User.class, userId) == null) {
+            throw new BadRequestAlertException("UserNotFound", "Transaction", null);
+        }
+        return userId;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<TransactionResult> borrowBooks(List<Transaction> transactions) {
+        List<TransactionResult> results;
+        try {
+            results = borrowBasket(transactions);
+        } catch (RuntimeException e) {
+            borrowsFailed.increment(transactions == null ? 1 : Math.max(1, transactions.size()));
+            throw e;
+        }
+        for (TransactionResult result : results) {
+            ("Successful".equals(result.getResult()) ? borrowsSucceeded
+                    : BOOK_NOT_AVAILABLE.equals(result.getResult()) ? borrowsOutOfStock : borrowsFailed).increment();
+        }
+        return results;
+    }
+
+    private List<TransactionResult> borrowBasket(List<Transaction> transactions) {
+        String userName = SecurityUtils.getCurrentUserLogin().orElse(null);
+        if (userName == null) {
+            throw new BadRequestAlertException("UserNotFound", "Transaction", null);
+        }
+        validateBasket(transactions);
+        for (Transaction transaction : transactions) {
+            if (transaction.getReturn_date() == null) {
+                throw new BadRequestAlertException("ToBorrowBookShouldNeedEnterReturnDate", "Transaction", null);
+            }
+        }
+        if (inventoryLedger.isWriteBehind()) {
+            Long userId = userService.findByUserName(userName).getId();
+            return journalBasket(transactions, transactions.stream()
+                    .map(transaction -> inventoryLedger.borrow(transaction.getBook().getId(), userId, transaction.getReturn_date()))
+                    .collect(Collectors.toList()), BOOK_NOT_AVAILABLE);
+        }
+        return transactionTemplate.execute(status -> {
+            boolean[] reserved = bookService.reserveCopies(bookIds(transactions));
+            return saveBasket(transactions, reserved, userName, BOOK_NOT_AVAILABLE, false);
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<TransactionResult> returnBooks(List<Transaction> transactions) {
+        String userName = SecurityUtils.getCurrentUserLogin().orElse(null);
+        if (userName == null) {
+            throw new BadRequestAlertException("UserNotFound", "Transaction", null);
+        }
+        validateBasket(transactions);
+        if (inventoryLedger.isWriteBehind()) {
+            Long userId = userService.findByUserName(userName).getId();
+            Timestamp now = Timestamp.from(Instant.now());
+            return journalBasket(transactions, transactions.stream()
+                    .map(transaction -> inventoryLedger.giveBack(transaction.getBook().getId(), userId, transaction.getReturn_date(),
+                            transaction.getReceived_date() == null ? now : transaction.getReceived_date()))
+                    .collect(Collectors.toList()), "BookNotFound");
+        }
+        return transactionTemplate.execute(status -> {
+            boolean[] released = bookService.releaseCopies(bookIds(transactions));
+            return saveBasket(transactions, released, userName, "BookNotFound", true);
+        });
+    }
+
+    private void validateBasket(List<Transaction> transactions) {
+        if (transactions == null || transactions.isEmpty() || transactions.size() > MAX_BASKET_SIZE) {
+            throw new BadRequestAlertException("InvalidBasketSize", "Transaction", null);
+        }
+        for (Transaction transaction : transactions) {
+            if (transaction.getBook() == null || transaction.getBook().getId() == null) {
+                throw new BadRequestAlertException("BookNotFound", "Transaction", null);
             }
-            bookService.save(book);
         }
-        return "Successful";
+    }
+
+    private static List<Long> bookIds(List<Transaction> transactions) {
+        return transactions.stream().map(transaction -> transaction.getBook().getId()).collect(Collectors.toList());
+    }
+
+    // the whole basket waits for one group commit of the journal; transaction ids are only assigned once written
+    private static List<TransactionResult> journalBasket(List<Transaction> transactions, List<CompletableFuture<Boolean>> accepted,
+                                                         String failure) {
+        List<TransactionResult> results = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            boolean journaled = accepted.get(i).join();
+            results.add(TransactionResult.builder()
+                    .bookId(transactions.get(i).getBook().getId())
+                    .result(journaled ? "Successful" : failure)
+                    .build());
+        }
+        return results;
+    }
+
+    private List<TransactionResult> saveBasket(List<Transaction> transactions, boolean[] updated, String userName,
+                                               String failure, boolean received) {
+        User user = userService.findByUserName(userName);
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Transaction> accepted = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (updated[i]) {
+                Transaction transaction = transactions.get(i);
+                transaction.setUser(user);
+                transaction.setBook(entityManager.getReference(Book.class, transaction.getBook().getId()));
+                transaction.setTrx_date(now);
+                if (received && transaction.getReceived_date() == null) {
+                    transaction.setReceived_date(now);
+                }
+                accepted.add(transaction);
+            }
+        }
+        // inserted as one JDBC batch on flush, ids come from the pooled sequence
+        transactionRepository.saveAll(accepted);
+        transactionRepository.flush();
+
+        List<TransactionResult> results = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            results.add(TransactionResult.builder()
+                    .bookId(transaction.getBook().getId())
+                    .transactionId(updated[i] ? transaction.getId() : null)
+                    .result(updated[i] ? "Successful" : failure)
+                    .build());
+        }
+        return results;
     }
 }
@@ -4,26 +4,41 @@ import com.digitalfactory.bookstore.domain.User;
 import com.digitalfactory.bookstore.repository.UserRepository;
 import com.digitalfactory.bookstore.service.UserService;
 import com.digitalfactory.bookstore.service.enums.UserType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 @Transactional
+@Timed("bookstore.service")
 public class UserServiceImpl implements UserService {
 
     private final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
 
+    private static final long USER_CACHE_MAXIMUM_SIZE = 10000;
+
+    private static final Duration USER_CACHE_TTL = Duration.ofMinutes(10);
+
     private final UserRepository userRepository;
 
+    // authenticated principals by username, so login and borrow/return do not reload the user and its roles
+    private final Cache<String, User> usersByName = Caffeine.newBuilder()
+            .maximumSize(USER_CACHE_MAXIMUM_SIZE)
+            .expireAfterWrite(USER_CACHE_TTL)
+            .build();
 
     public UserServiceImpl(UserRepository userRepository) {
         this.userRepository = userRepository;
@@ -31,6 +46,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public User save(User user) {
         log.debug("Request to save user : {}", user);
+        evict(user.getId(), user.getUsername());
         return userRepository.save(user);
     }
 
@@ -90,12 +106,41 @@ public class UserServiceImpl implements UserService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete user : {}", id);
+        evict(id, null);
         userRepository.deleteById(id);
     }
 
     @Override
     public User findByUserName(String userName) {
         log.debug("Request to return user by username ");
-        return userRepository.findByUsername(userName).get();
+        return findOneByUserName(userName).get();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<User> findOneByUserName(String userName) {
+        // missing users are not cached, the loader returning null leaves no entry
+        return Optional.ofNullable(usersByName.get(userName, name -> userRepository.findByUsername(name).orElse(null)));
+    }
+
+    @Override
+    public User updatePassword(String userName, String encodedPassword) {
+        log.debug("Request to update password of user : {}", userName);
+        User user = userRepository.findByUsername(userName).get();
+        user.setPassword(encodedPassword);
+        evict(user.getId(), userName);
+        return user;
+    }
+
+    private void evict(Long id, String userName) {
+        CacheEvictions.afterCompletion(() -> {
+            if (userName != null) {
+                usersByName.invalidate(userName);
+            }
+            if (id != null) {
+                // the username may have changed, drop whatever entry still points at this user
+                usersByName.asMap().values().removeIf(cached -> id.equals(cached.getId()));
+            }
+        });
     }
 }
@@ -0,0 +1,17 @@
+package com.digitalfactory.bookstore.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares towards the current request, leaving the SQL as it is.
+ */
+public class CountingStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatements.prepared(sql);
+        return sql;
+    }
+}
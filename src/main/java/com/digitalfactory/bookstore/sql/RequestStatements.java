@@ -0,0 +1,78 @@
+package com.digitalfactory.bookstore.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statements run on behalf of the current request, kept per thread between {@link #begin()} and {@link #end()}.
+ * Outside a request nothing is recorded.
+ */
+public final class RequestStatements {
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    // sql with its parameters as placeholders, so the same query with other values counts as a repeat
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    private int statements;
+
+    private long nanos;
+
+    private RequestStatements() {
+    }
+
+    static RequestStatements begin() {
+        RequestStatements statements = new RequestStatements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the statements of the request on this thread, or null outside a request.
+     */
+    public static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    static void prepared(String sql) {
+        RequestStatements current = CURRENT.get();
+        if (current != null) {
+            current.statements++;
+            current.counts.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    static void executed(long nanos) {
+        RequestStatements current = CURRENT.get();
+        if (current != null) {
+            current.nanos += nanos;
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public double getMillis() {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param threshold the least number of runs.
+     * @return the statements run at least that often, with their number of runs.
+     */
+    Map<String, Integer> repeated(int threshold) {
+        Map<String, Integer> repeated = new HashMap<>();
+        counts.forEach((sql, count) -> {
+            if (count >= threshold) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+}
@@ -0,0 +1,31 @@
+package com.digitalfactory.bookstore.sql;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(prefix = "statement-budget", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StatementBudgetConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer statementCounting() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new CountingStatementInspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, TimingSessionEventListener.class.getName());
+        };
+    }
+
+    // outside the security filters, so loading the user of a login counts too
+    @Bean
+    FilterRegistrationBean<StatementBudgetFilter> statementBudgetFilter(StatementBudgetProperties statementBudgetProperties) {
+        FilterRegistrationBean<StatementBudgetFilter> registration =
+                new FilterRegistrationBean<>(new StatementBudgetFilter(statementBudgetProperties));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,58 @@
+package com.digitalfactory.bookstore.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Collects the statements of each request and logs them once it is handled: a warning when the endpoint went over its
+ * budget or ran the same statement again and again with other parameters, the usual sign of an N+1 fetch. Statements
+ * sent through {@code JdbcTemplate} or run on other threads, such as the streaming endpoints, are not seen.
+ */
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    private final Logger log = LoggerFactory.getLogger(StatementBudgetFilter.class);
+
+    private final StatementBudgetProperties statementBudgetProperties;
+
+    public StatementBudgetFilter(StatementBudgetProperties statementBudgetProperties) {
+        this.statementBudgetProperties = statementBudgetProperties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestStatements statements = RequestStatements.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestStatements.end();
+            report(request, statements);
+        }
+    }
+
+    private void report(HttpServletRequest request, RequestStatements statements) {
+        if (statements.getStatements() == 0) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+        int budget = statementBudgetProperties.getBudgets().getOrDefault(endpoint, statementBudgetProperties.getDefaultBudget());
+        if (statements.getStatements() > budget) {
+            log.warn("{} ran {} statements in {} ms, over its budget of {}", endpoint, statements.getStatements(),
+                    String.format("%.1f", statements.getMillis()), budget);
+        } else if (log.isDebugEnabled()) {
+            log.debug("{} ran {} statements in {} ms", endpoint, statements.getStatements(),
+                    String.format("%.1f", statements.getMillis()));
+        }
+        statements.repeated(statementBudgetProperties.getRepeatThreshold()).forEach((sql, count) ->
+                log.warn("{} ran the same statement {} times, likely N+1: {}", endpoint, count, sql));
+    }
+}
@@ -0,0 +1,28 @@
+package com.digitalfactory.bookstore.sql;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "statement-budget")
+@Data
+public class StatementBudgetProperties {
+
+    // count the SQL statements and database time of every request
+    private boolean enabled = true;
+
+    // report them as X-Statement-Count and Server-Timing response headers
+    private boolean headers = true;
+
+    // statements a request may run before a warning is logged, unless its endpoint has its own budget
+    private int defaultBudget = 10;
+
+    // budgets by method and route pattern, for example "[GET /v1/api/book/{id}]": 1
+    private Map<String, Integer> budgets = new HashMap<>();
+
+    // the same statement run this many times in one request is logged as a likely N+1
+    private int repeatThreshold = 3;
+
+}
@@ -0,0 +1,41 @@
+package com.digitalfactory.bookstore.sql;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Locale;
+
+/**
+ * Reports the statements run so far as response headers, just before the body is written and the headers are sent.
+ */
+@ControllerAdvice
+@ConditionalOnExpression("${statement-budget.enabled:true} and ${statement-budget.headers:true}")
+public class StatementHeadersAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String STATEMENT_COUNT = "X-Statement-Count";
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestStatements statements = RequestStatements.current();
+        if (statements != null) {
+            response.getHeaders().set(STATEMENT_COUNT, Integer.toString(statements.getStatements()));
+            response.getHeaders().set(SERVER_TIMING, String.format(Locale.ROOT, "db;dur=%.1f", statements.getMillis()));
+        }
+        return body;
+    }
+}
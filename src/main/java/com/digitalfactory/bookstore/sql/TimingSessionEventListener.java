@@ -0,0 +1,34 @@
+package com.digitalfactory.bookstore.sql;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Adds the time spent executing statements and batches to the current request. Hibernate creates one per session, so
+ * a session's statements never overlap and one start time is enough.
+ */
+public class TimingSessionEventListener implements SessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestStatements.executed(System.nanoTime() - start);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestStatements.executed(System.nanoTime() - start);
+    }
+}
@@ -1,13 +1,18 @@
 package com.digitalfactory.bookstore.web;
 
 import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import com.digitalfactory.bookstore.security.LoginAttemptThrottle;
+import com.digitalfactory.bookstore.security.PasswordHashingExecutor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -15,30 +20,56 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.springframework.http.ResponseEntity.ok;
 
 @RestController
 @RequestMapping("/auth")
 @RequiredArgsConstructor
+@Slf4j
 public class AuthenticationController {
     
     private final AuthenticationManager authenticationManager;
     
     private final JwtTokenProvider jwtTokenProvider;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final LoginAttemptThrottle loginAttemptThrottle;
     
     @PostMapping("/login")
-    public ResponseEntity login(@RequestBody AuthenticationRequest data) {
-        
+    public CompletableFuture<ResponseEntity> login(@RequestBody AuthenticationRequest data) {
+        String username = data.getUsername();
+        // nobody to authenticate, and the throttle is keyed by username
+        if (!StringUtils.hasText(username)) {
+            return completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        if (loginAttemptThrottle.isBlocked(username)) {
+            return completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+        }
+        try {
+            // the password check runs on the hashing pool, the request thread is released until it completes
+            return passwordHashingExecutor.submit(() -> authenticate(username, data.getPassword()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue is full, rejecting login");
+            return completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+    }
+
+    private ResponseEntity authenticate(String username, String password) {
         try {
-            String username = data.getUsername();
-            Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, data.getPassword()));
+            Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+            loginAttemptThrottle.loginSucceeded(username);
             String token = jwtTokenProvider.createToken(authentication);
             Map<Object, Object> model = new HashMap<>();
             model.put("username", username);
             model.put("token", token);
             return ok(model);
         } catch (AuthenticationException e) {
+            loginAttemptThrottle.loginFailed(username);
             throw new BadCredentialsException("Invalid username/password supplied");
         }
     }
@@ -2,20 +2,25 @@ package com.digitalfactory.bookstore.web;
 
 import com.digitalfactory.bookstore.domain.BookCategory;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
-import com.digitalfactory.bookstore.repository.BookCategoryRepository;
 import com.digitalfactory.bookstore.service.BookCategoryService;
 import com.digitalfactory.bookstore.web.response.EntityId;
 import com.digitalfactory.bookstore.web.response.HeaderUtil;
+import com.digitalfactory.bookstore.web.response.KeysetCursor;
+import com.digitalfactory.bookstore.web.response.KeysetSlice;
 import com.digitalfactory.bookstore.web.response.ResponseUtil;
 import jakarta.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.net.URISyntaxException;
 import java.util.List;
@@ -30,14 +35,12 @@ public class BookCategoryController {
 
     private static final String ENTITY_NAME = "book-category";
     private static final String applicationName = "BookStore";
+    private static final int MAX_PAGE_SIZE = 100;
 
     private final BookCategoryService bookCategoryService;
 
-    private final BookCategoryRepository bookCategoryRepository;
-
-    public BookCategoryController(BookCategoryService bookCategoryService, BookCategoryRepository bookCategoryRepository) {
+    public BookCategoryController(BookCategoryService bookCategoryService) {
         this.bookCategoryService = bookCategoryService;
-        this.bookCategoryRepository = bookCategoryRepository;
     }
 
     @PostMapping(
@@ -66,7 +69,8 @@ public class BookCategoryController {
     )
     public ResponseEntity<BookCategory> updateBookCategory(
             @PathVariable(value = "id", required = false) final Long id,
-            @RequestBody BookCategory bookCategory
+            @RequestBody BookCategory bookCategory,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Book Category : {}, {}", id, bookCategory);
         if (bookCategory.getId() == null) {
@@ -76,14 +80,9 @@ public class BookCategoryController {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!bookCategoryRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        BookCategory result = bookCategoryService.save(bookCategory);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        BookCategory current = bookCategoryService.findOne(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        return saveIfMatch(current, bookCategory, ifMatch);
     }
 
     @PatchMapping(
@@ -93,7 +92,8 @@ public class BookCategoryController {
     )
     public ResponseEntity<BookCategory> partialUpdateBookCategory(
             @PathVariable(value = "id", required = false) final Long id,
-            @NotNull @RequestBody BookCategory bookCategory
+            @NotNull @RequestBody BookCategory bookCategory,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Book Category : {}, {}", id, bookCategory);
         if (bookCategory.getId() == null) {
@@ -103,14 +103,9 @@ public class BookCategoryController {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!bookCategoryRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        BookCategory result = bookCategoryService.save(bookCategory);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        BookCategory current = bookCategoryService.findOne(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        return saveIfMatch(current, bookCategory, ifMatch);
     }
 
     @GetMapping(
@@ -118,10 +113,31 @@ public class BookCategoryController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<BookCategory> getBookCategory(@PathVariable Long id) {
+    public ResponseEntity<BookCategory> getBookCategory(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Book Category : {}", id);
         Optional<BookCategory> bookCategory = bookCategoryService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(bookCategory);
+        return ResponseUtil.wrapOrNotModified(request, bookCategory, c -> ResponseUtil.etag(c.getVersion()));
+    }
+
+    @GetMapping(
+            value = "/book-category-keyset",
+            produces = { MediaType.APPLICATION_JSON_VALUE },
+            consumes = { MediaType.APPLICATION_JSON_VALUE }
+    )
+    public ResponseEntity<KeysetSlice<BookCategory>> getBookCategoryKeyset(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            WebRequest request
+    ) {
+        log.debug("REST request to get Book Category slice : {}, {}", cursor, size);
+        Long afterId = cursor == null ? 0L : parseId(KeysetCursor.decode(cursor, 1, ENTITY_NAME)[0]);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), () -> {
+            Slice<BookCategory> bookCategories = bookCategoryService.findAllAfter(afterId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+            String next = bookCategories.hasNext()
+                    ? KeysetCursor.encode(bookCategories.getContent().get(bookCategories.getNumberOfElements() - 1).getId())
+                    : null;
+            return new KeysetSlice<>(bookCategories.getContent(), bookCategories.hasNext(), next);
+        });
     }
 
     @GetMapping(
@@ -129,10 +145,9 @@ public class BookCategoryController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<Page<BookCategory>> getBookCategoryPageable(Pageable pageable) {
+    public ResponseEntity<Page<BookCategory>> getBookCategoryPageable(Pageable pageable, WebRequest request) {
         log.debug("REST request to get Book Category : {}", pageable);
-        Page<BookCategory> bookCategories = bookCategoryService.findAll(pageable);
-        return ResponseEntity.ok(bookCategories);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), () -> bookCategoryService.findAll(pageable));
     }
 
     @GetMapping(
@@ -140,10 +155,9 @@ public class BookCategoryController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<List<BookCategory>> getBookCategoryAll() {
+    public ResponseEntity<List<BookCategory>> getBookCategoryAll(WebRequest request) {
         log.debug("REST request to get Book Category : {}");
-        List<BookCategory> bookCategories = bookCategoryService.findAll();
-        return ResponseEntity.ok(bookCategories);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), bookCategoryService::findAll);
     }
 
     @DeleteMapping("/book-category/{id}")
@@ -152,4 +166,31 @@ public class BookCategoryController {
         bookCategoryService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString())).build();
     }
+
+    private ResponseEntity<BookCategory> saveIfMatch(BookCategory current, BookCategory bookCategory, String ifMatch) {
+        String etag = ResponseUtil.etag(current.getVersion());
+        if (!ResponseUtil.ifMatch(ifMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag).build();
+        }
+        // merged against the version that was checked, so a write racing this one fails the optimistic lock
+        bookCategory.setVersion(current.getVersion());
+        try {
+            BookCategory result = bookCategoryService.save(bookCategory);
+            return ResponseEntity.ok().eTag(ResponseUtil.etag(result.getVersion())).body(result);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    private String catalogEtag() {
+        return ResponseUtil.etag(bookCategoryService.catalogVersion());
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
+    }
 }
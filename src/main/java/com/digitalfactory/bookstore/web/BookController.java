@@ -1,22 +1,40 @@
 package com.digitalfactory.bookstore.web;
 
 import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.events.StockChangeBroadcaster;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
-import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.search.BookAutocomplete;
+import com.digitalfactory.bookstore.service.BookCategoryService;
+import com.digitalfactory.bookstore.service.BookImportService;
 import com.digitalfactory.bookstore.service.BookService;
+import com.digitalfactory.bookstore.service.dto.BookSuggestion;
+import com.digitalfactory.bookstore.service.dto.ImportReport;
 import com.digitalfactory.bookstore.web.response.EntityId;
 import com.digitalfactory.bookstore.web.response.HeaderUtil;
+import com.digitalfactory.bookstore.web.response.KeysetCursor;
+import com.digitalfactory.bookstore.web.response.KeysetSlice;
 import com.digitalfactory.bookstore.web.response.ResponseUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
@@ -30,14 +48,26 @@ public class BookController {
 
     private static final String ENTITY_NAME = "book";
     private static final String applicationName = "BookStore";
+    private static final int MAX_PAGE_SIZE = 100;
 
     private final BookService bookService;
 
-    private final BookRepository bookRepository;
+    private final BookCategoryService bookCategoryService;
 
-    public BookController(BookService bookService, BookRepository bookRepository) {
+    private final BookImportService bookImportService;
+
+    private final ObjectMapper objectMapper;
+
+    private final StockChangeBroadcaster stockChangeBroadcaster;
+
+    public BookController(BookService bookService, BookCategoryService bookCategoryService,
+                          BookImportService bookImportService, ObjectMapper objectMapper,
+                          StockChangeBroadcaster stockChangeBroadcaster) {
         this.bookService = bookService;
-        this.bookRepository = bookRepository;
+        this.bookCategoryService = bookCategoryService;
+        this.bookImportService = bookImportService;
+        this.objectMapper = objectMapper;
+        this.stockChangeBroadcaster = stockChangeBroadcaster;
     }
 
     @PostMapping(
@@ -59,6 +89,26 @@ public class BookController {
         return entity;
     }
 
+    @PostMapping(
+            value = "/book-import",
+            produces = {MediaType.APPLICATION_JSON_VALUE},
+            consumes = {"text/csv"}
+    )
+    public ImportReport importBooksCsv(InputStream csv) throws IOException {
+        log.debug("REST request to import books from csv");
+        return bookImportService.importCsv(csv);
+    }
+
+    @PostMapping(
+            value = "/book-import",
+            produces = {MediaType.APPLICATION_JSON_VALUE},
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public ImportReport importBooksNdjson(InputStream ndjson) throws IOException {
+        log.debug("REST request to import books from ndjson");
+        return bookImportService.importNdjson(ndjson);
+    }
+
     @PutMapping(
             value = "/book/{id}",
             produces = {MediaType.APPLICATION_JSON_VALUE},
@@ -66,7 +116,8 @@ public class BookController {
     )
     public ResponseEntity<Book> updateBook(
             @PathVariable(value = "id", required = false) final Long id,
-            @RequestBody Book book
+            @RequestBody Book book,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Book : {}, {}", id, book);
         if (book.getId() == null) {
@@ -76,14 +127,9 @@ public class BookController {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!bookRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Book result = bookService.save(book);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        Book current = bookService.findOne(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        return saveIfMatch(current, book, ifMatch);
     }
 
     @PatchMapping(
@@ -93,7 +139,8 @@ public class BookController {
     )
     public ResponseEntity<Book> partialUpdateBook(
             @PathVariable(value = "id", required = false) final Long id,
-            @NotNull @RequestBody Book book
+            @NotNull @RequestBody Book book,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update Book : {}, {}", id, book);
         if (book.getId() == null) {
@@ -103,14 +150,9 @@ public class BookController {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!bookRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Book result = bookService.save(book);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        Book current = bookService.findOne(id)
+                .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        return saveIfMatch(current, book, ifMatch);
     }
 
     @GetMapping(
@@ -118,10 +160,51 @@ public class BookController {
             produces = {MediaType.APPLICATION_JSON_VALUE},
             consumes = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<Book> getBook(@PathVariable Long id) {
+    public ResponseEntity<Book> getBook(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Book : {}", id);
         Optional<Book> book = bookService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(book);
+        return ResponseUtil.wrapOrNotModified(request, book, BookController::etag);
+    }
+
+    @GetMapping(
+            value = "/book-search",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<Page<Book>> searchBooks(@RequestParam(value = "q") String query, Pageable pageable) {
+        log.debug("REST request to search Books : {}", query);
+        Page<Book> books = bookService.search(query, capped(pageable));
+        return ResponseEntity.ok().body(books);
+    }
+
+    @GetMapping(
+            value = "/book-autocomplete",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<List<BookSuggestion>> autocompleteBooks(
+            @RequestParam(value = "prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        log.debug("REST request to autocomplete Books : {}", prefix);
+        return ResponseEntity.ok().body(bookService.autocomplete(prefix, Math.min(limit, BookAutocomplete.MAX_SUGGESTIONS)));
+    }
+
+    @GetMapping(
+            value = "/book-keyset",
+            produces = {MediaType.APPLICATION_JSON_VALUE},
+            consumes = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<KeysetSlice<Book>> getBookKeyset(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            WebRequest request
+    ) {
+        log.debug("REST request to get Book slice : {}, {}", cursor, size);
+        Long afterId = cursor == null ? 0L : parseId(KeysetCursor.decode(cursor, 1, ENTITY_NAME)[0]);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), () -> {
+            Slice<Book> books = bookService.findAllAfter(afterId, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+            String next = books.hasNext() ? KeysetCursor.encode(books.getContent().get(books.getNumberOfElements() - 1).getId()) : null;
+            return new KeysetSlice<>(books.getContent(), books.hasNext(), next);
+        });
     }
 
     @GetMapping(
@@ -129,10 +212,9 @@ public class BookController {
             produces = {MediaType.APPLICATION_JSON_VALUE},
             consumes = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<Page<Book>> getBookPageable(Pageable pageable) {
+    public ResponseEntity<Page<Book>> getBookPageable(Pageable pageable, WebRequest request) {
         log.debug("REST request to get Book : {}", pageable);
-        Page<Book> books = bookService.findAll(pageable);
-        return ResponseEntity.ok(books);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), () -> bookService.findAll(pageable));
     }
 
     @GetMapping(
@@ -140,10 +222,18 @@ public class BookController {
             produces = {MediaType.APPLICATION_JSON_VALUE},
             consumes = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Book>> getBookAll() {
+    public ResponseEntity<List<Book>> getBookAll(WebRequest request) {
         log.debug("REST request to get Book : {}");
-        List<Book> books = bookService.findAll();
-        return ResponseEntity.ok(books);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), bookService::findAll);
+    }
+
+    @GetMapping(
+            value = "/books-stream",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public ResponseEntity<StreamingResponseBody> getBookStream() {
+        log.debug("REST request to stream Books");
+        return ResponseUtil.wrapNdjson(objectMapper, bookService::streamAll);
     }
 
     @DeleteMapping("/book/{id}")
@@ -158,10 +248,9 @@ public class BookController {
             produces = {MediaType.APPLICATION_JSON_VALUE},
             consumes = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Book>> getAvailableBooks() {
-        log.debug("REST request to get Book : {}");
-        List<Book> books = bookService.findAvailableBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<Page<Book>> getAvailableBooks(Pageable pageable, WebRequest request) {
+        log.debug("REST request to get available Books : {}", pageable);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(), () -> bookService.findAvailableBooks(capped(pageable)));
     }
 
     @GetMapping(
@@ -169,9 +258,64 @@ public class BookController {
             produces = {MediaType.APPLICATION_JSON_VALUE},
             consumes = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Book>> getAvailableBooksByCategory(@PathVariable Long id) {
-        log.debug("REST request to get Book : {}");
-        List<Book> books = bookService.findAvailableBooksByCategory(id);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<Page<Book>> getAvailableBooksByCategory(@PathVariable Long id, Pageable pageable, WebRequest request) {
+        log.debug("REST request to get available Books by category : {}, {}", id, pageable);
+        return ResponseUtil.wrapOrNotModified(request, catalogEtag(),
+                () -> bookService.findAvailableBooksByCategory(id, capped(pageable)));
+    }
+
+    /**
+     * Pushes a {@code stock} event with the current amount whenever a book's availability changes, a {@code resync}
+     * event when the client fell too far behind and should reload the list instead.
+     */
+    @GetMapping(
+            value = "/available-books-stream",
+            produces = {MediaType.TEXT_EVENT_STREAM_VALUE}
+    )
+    public SseEmitter streamAvailableBooks(@RequestParam(value = "categoryId", required = false) Long categoryId) {
+        log.debug("REST request to stream available Books : {}", categoryId);
+        return stockChangeBroadcaster.subscribe(categoryId);
+    }
+
+    private ResponseEntity<Book> saveIfMatch(Book current, Book book, String ifMatch) {
+        if (!ResponseUtil.ifMatch(ifMatch, etag(current))) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag(current)).build();
+        }
+        // merged against the version that was checked, so a write racing this one fails the optimistic lock
+        book.setVersion(current.getVersion());
+        try {
+            Book result = bookService.save(book);
+            return ResponseEntity.ok().eTag(etag(result)).body(result);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+    }
+
+    /**
+     * The category is embedded in the representation, so its version is part of the tag.
+     */
+    private static String etag(Book book) {
+        return ResponseUtil.etag(book.getVersion(), book.getBook_category().getVersion());
+    }
+
+    /**
+     * Taken before the body is loaded: a change in between makes the tag older than the body, which only costs the
+     * client one more full response.
+     */
+    private String catalogEtag() {
+        return ResponseUtil.etag(bookService.catalogVersion(), bookCategoryService.catalogVersion());
+    }
+
+    private static Pageable capped(Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");
+        return PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE), sort);
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
     }
 }
@@ -5,20 +5,30 @@ import com.digitalfactory.bookstore.domain.Transaction;
 import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
 import com.digitalfactory.bookstore.repository.TransactionRepository;
 import com.digitalfactory.bookstore.service.TransactionService;
+import com.digitalfactory.bookstore.service.dto.TransactionResult;
+import com.digitalfactory.bookstore.service.dto.TransactionView;
 import com.digitalfactory.bookstore.web.response.EntityId;
 import com.digitalfactory.bookstore.web.response.HeaderUtil;
+import com.digitalfactory.bookstore.web.response.KeysetCursor;
+import com.digitalfactory.bookstore.web.response.KeysetSlice;
 import com.digitalfactory.bookstore.web.response.ResponseUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.constraints.NotNull;
 import java.net.URISyntaxException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -31,14 +41,18 @@ public class TransactionController {
 
     private static final String ENTITY_NAME = "transaction";
     private static final String applicationName = "BookStore";
+    private static final int MAX_PAGE_SIZE = 100;
 
     private final TransactionService transactionService;
 
     private final TransactionRepository transactionRepository;
 
-    public TransactionController(TransactionService transactionService, TransactionRepository transactionRepository) {
+    private final ObjectMapper objectMapper;
+
+    public TransactionController(TransactionService transactionService, TransactionRepository transactionRepository, ObjectMapper objectMapper) {
         this.transactionService = transactionService;
         this.transactionRepository = transactionRepository;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping(
@@ -65,7 +79,7 @@ public class TransactionController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<Transaction> updateTransaction(
+    public ResponseEntity<TransactionView> updateTransaction(
             @PathVariable(value = "id", required = false) final Long id,
             @RequestBody Transaction transaction
     ) throws URISyntaxException {
@@ -82,9 +96,7 @@ public class TransactionController {
         }
 
         Transaction result = transactionService.save(transaction);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        return ResponseUtil.wrapOrNotFound(transactionService.findOneView(result.getId()));
     }
 
     @PatchMapping(
@@ -92,7 +104,7 @@ public class TransactionController {
             consumes = { "application/json", "application/merge-patch+json" },
             produces = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<Transaction> partialUpdateTransaction(
+    public ResponseEntity<TransactionView> partialUpdateTransaction(
             @PathVariable(value = "id", required = false) final Long id,
             @NotNull @RequestBody Transaction transaction
     ) throws URISyntaxException {
@@ -109,9 +121,7 @@ public class TransactionController {
         }
 
         Transaction result = transactionService.save(transaction);
-        return ResponseEntity
-                .ok()
-                .body(result);
+        return ResponseUtil.wrapOrNotFound(transactionService.findOneView(result.getId()));
     }
 
     @GetMapping(
@@ -119,20 +129,50 @@ public class TransactionController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<Transaction> getTransaction(@PathVariable Long id) {
+    public ResponseEntity<TransactionView> getTransaction(@PathVariable Long id) {
         log.debug("REST request to get Transaction : {}", id);
-        Optional<Transaction> transaction = transactionService.findOne(id);
+        Optional<TransactionView> transaction = transactionService.findOneView(id);
         return ResponseUtil.wrapOrNotFound(transaction);
     }
 
+    @GetMapping(
+            value = "/transaction-keyset",
+            produces = { MediaType.APPLICATION_JSON_VALUE },
+            consumes = { MediaType.APPLICATION_JSON_VALUE }
+    )
+    public ResponseEntity<KeysetSlice<TransactionView>> getTransactionKeyset(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        log.debug("REST request to get Transaction slice : {}, {}", cursor, size);
+        Timestamp trxDate = null;
+        Long id = null;
+        if (cursor != null) {
+            String[] values = KeysetCursor.decode(cursor, 2, ENTITY_NAME);
+            try {
+                trxDate = Timestamp.from(Instant.parse(values[0]));
+                id = Long.valueOf(values[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+            }
+        }
+        Slice<TransactionView> transactions = transactionService.findAllBefore(trxDate, id, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        String next = null;
+        if (transactions.hasNext()) {
+            TransactionView last = transactions.getContent().get(transactions.getNumberOfElements() - 1);
+            next = KeysetCursor.encode(last.getTrx_date().toInstant(), last.getId());
+        }
+        return ResponseEntity.ok(new KeysetSlice<>(transactions.getContent(), transactions.hasNext(), next));
+    }
+
     @GetMapping(
             value = "/transaction-pageable",
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<Page<Transaction>> getTransactionPageable(Pageable pageable) {
+    public ResponseEntity<Page<TransactionView>> getTransactionPageable(Pageable pageable) {
         log.debug("REST request to get Transaction : {}", pageable);
-        Page<Transaction> transactions = transactionService.findAll(pageable);
+        Page<TransactionView> transactions = transactionService.findAllViews(pageable);
         return ResponseEntity.ok(transactions);
     }
 
@@ -141,12 +181,36 @@ public class TransactionController {
             produces = { MediaType.APPLICATION_JSON_VALUE },
             consumes = { MediaType.APPLICATION_JSON_VALUE }
     )
-    public ResponseEntity<List<Transaction>> getTransactionAll() {
+    public ResponseEntity<List<TransactionView>> getTransactionAll() {
         log.debug("REST request to get Transaction : {}");
-        List<Transaction> transactions = transactionService.findAll();
+        List<TransactionView> transactions = transactionService.findAllViews();
         return ResponseEntity.ok(transactions);
     }
 
+    @GetMapping(
+            value = "/transactions-stream",
+            produces = { MediaType.APPLICATION_NDJSON_VALUE }
+    )
+    public ResponseEntity<StreamingResponseBody> getTransactionStream() {
+        log.debug("REST request to stream Transactions");
+        return ResponseUtil.wrapNdjson(objectMapper, transactionService::streamAll);
+    }
+
+    @GetMapping("/transactions-export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip
+    ) {
+        log.debug("REST request to export Transactions : {}, {}, {}", from, to, userId);
+        Timestamp fromDate = from == null ? null : Timestamp.from(from);
+        Timestamp toDate = to == null ? null : Timestamp.from(to);
+        // written from the async executor, the request thread is released as soon as this returns
+        return ResponseUtil.wrapCsv(TransactionView.class, "transactions", gzip,
+                consumer -> transactionService.exportAll(fromDate, toDate, userId, consumer));
+    }
+
     @DeleteMapping("/transaction/{id}")
     public ResponseEntity<Void> deleteTransaction(@PathVariable Long id) {
         log.debug("REST request to delete transaction : {}", id);
@@ -177,4 +241,24 @@ public class TransactionController {
         log.debug("REST request to request book : {}", trx);
         return transactionService.returnBook(trx);
     }
+
+    @PostMapping(
+            value = "/customer/request-books",
+            produces = {MediaType.APPLICATION_JSON_VALUE},
+            consumes = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public List<TransactionResult> requestBooks(@RequestBody List<Transaction> trxs) {
+        log.debug("REST request to request books : {}", trxs.size());
+        return transactionService.borrowBooks(trxs);
+    }
+
+    @PostMapping(
+            value = "/customer/return-books",
+            produces = {MediaType.APPLICATION_JSON_VALUE},
+            consumes = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public List<TransactionResult> returnBooks(@RequestBody List<Transaction> trxs) {
+        log.debug("REST request to return books : {}", trxs.size());
+        return transactionService.returnBooks(trxs);
+    }
 }
@@ -0,0 +1,51 @@
+package com.digitalfactory.bookstore.web.response;
+
+import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque cursor for keyset pagination, the sort key values of the last row of a slice encoded as url safe base64.
+ */
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * <p>encode.</p>
+     *
+     * @param values the sort key values of the last returned row.
+     * @return the opaque cursor.
+     */
+    public static String encode(Object... values) {
+        String raw = Arrays.stream(values).map(String::valueOf).collect(Collectors.joining(SEPARATOR));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * <p>decode.</p>
+     *
+     * @param cursor the opaque cursor sent by the client.
+     * @param size the expected number of sort key values.
+     * @param entityName the entity the cursor belongs to.
+     * @return the sort key values.
+     */
+    public static String[] decode(String cursor, int size, String entityName) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] values = raw.split("\\" + SEPARATOR, -1);
+            if (values.length == size) {
+                return values;
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the bad request below
+        }
+        throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+    }
+}
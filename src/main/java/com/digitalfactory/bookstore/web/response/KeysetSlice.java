@@ -0,0 +1,25 @@
+package com.digitalfactory.bookstore.web.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class KeysetSlice<T> {
+
+    private List<T> content;
+
+    private boolean hasNext;
+
+    private String nextCursor;
+
+    public KeysetSlice() {
+        //
+    }
+
+    public KeysetSlice(List<T> content, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,14 +1,41 @@
 package com.digitalfactory.bookstore.web.response;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 public interface ResponseUtil {
 
+    int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Clients may keep tagged responses but must revalidate them, which costs a {@link HttpStatus#NOT_MODIFIED} when
+     * nothing changed.
+     */
+    CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     /**
      * Wrap the optional into a {@link ResponseEntity} with an {@link HttpStatus#OK} status, or if it's empty, it
      * returns a {@link ResponseEntity} with {@link HttpStatus#NOT_FOUND}.
@@ -34,4 +61,131 @@ public interface ResponseUtil {
         return maybeResponse.map(response -> ResponseEntity.ok().headers(header).body(response))
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
-}
\ No newline at end of file
+
+    /**
+     * Build a strong entity tag from the given versions, e.g. {@code "3-1"}.
+     *
+     * @param versions versions the representation depends on
+     * @return the quoted entity tag
+     */
+    static String etag(Object... versions) {
+        return Arrays.stream(versions).map(String::valueOf).collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    /**
+     * Answer a conditional request: if its {@code If-None-Match} header matches the entity tag, returns a
+     * {@link HttpStatus#NOT_MODIFIED} without calling {@code body}, so nothing is loaded or serialized. Otherwise wraps
+     * the body into a {@link ResponseEntity} with an {@link HttpStatus#OK} status and the entity tag.
+     *
+     * @param <X>     type of the response
+     * @param request current request
+     * @param etag    entity tag of the current representation
+     * @param body    supplier of the response, only called when the client copy is stale
+     * @return response containing the body, or {@link HttpStatus#NOT_MODIFIED}
+     */
+    static <X> ResponseEntity<X> wrapOrNotModified(WebRequest request, String etag, Supplier<X> body) {
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag, true)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body.get());
+    }
+
+    /**
+     * Wrap the optional like {@link #wrapOrNotModified(WebRequest, String, Supplier)}, or if it's empty, throws a
+     * {@link ResponseStatusException} with status {@link HttpStatus#NOT_FOUND}.
+     *
+     * @param <X>           type of the response
+     * @param request       current request
+     * @param maybeResponse response to return if present
+     * @param etag          entity tag of the response
+     * @return response containing {@code maybeResponse} if present, or {@link HttpStatus#NOT_MODIFIED}
+     */
+    static <X> ResponseEntity<X> wrapOrNotModified(WebRequest request, Optional<X> maybeResponse, Function<X, String> etag) {
+        return maybeResponse.map(response -> wrapOrNotModified(request, etag.apply(response), () -> response))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Check an {@code If-Match} header against the entity tag of the stored resource. A missing header always matches,
+     * so unconditional writes keep working.
+     *
+     * @param ifMatch value of the {@code If-Match} header, may be null
+     * @param etag    entity tag of the stored resource
+     * @return whether the write may proceed
+     */
+    static boolean ifMatch(String ifMatch, String etag) {
+        return ifMatch == null || matches(ifMatch, etag, false);
+    }
+
+    private static boolean matches(String header, String etag, boolean weak) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (weak && candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wrap a producer of entities into a {@link StreamingResponseBody} that writes each entity as one line of
+     * newline delimited JSON as soon as it is produced, so nothing is collected in memory.
+     *
+     * @param <X>          type of the streamed entities
+     * @param objectMapper mapper used to serialize each entity
+     * @param producer     called with the consumer that writes one entity to the response
+     * @return response streaming {@code application/x-ndjson}
+     */
+    static <X> ResponseEntity<StreamingResponseBody> wrapNdjson(ObjectMapper objectMapper, Consumer<Consumer<X>> producer) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        StreamingResponseBody body = out -> producer.accept(entity -> {
+            try {
+                out.write(writer.writeValueAsBytes(entity));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Wrap a producer of entities into a {@link StreamingResponseBody} that writes each entity as one CSV row, after
+     * a header row, as soon as it is produced. Dates are written as ISO-8601.
+     *
+     * @param <X>      type of the streamed entities
+     * @param type     class of the entities, its properties are the columns
+     * @param filename name offered to the client for the download, without extension
+     * @param gzip     whether to compress the body, the download is then a {@code .csv.gz} file
+     * @param producer called with the consumer that writes one entity to the response
+     * @return response streaming {@code text/csv} or {@code application/gzip}
+     */
+    static <X> ResponseEntity<StreamingResponseBody> wrapCsv(Class<X> type, String filename, boolean gzip,
+                                                             Consumer<Consumer<X>> producer) {
+        CsvMapper csvMapper = CsvMapper.builder().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        ObjectWriter writer = csvMapper.writer(csvMapper.schemaFor(type).withHeader());
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+            try (SequenceWriter rows = writer.writeValues(target)) {
+                producer.accept(entity -> {
+                    try {
+                        rows.write(entity);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename + (gzip ? ".csv.gz" : ".csv")).build().toString())
+                .body(body);
+    }
+}
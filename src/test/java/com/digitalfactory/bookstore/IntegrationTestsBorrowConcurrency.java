@@ -0,0 +1,158 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.repository.TransactionRepository;
+import com.digitalfactory.bookstore.repository.UserRepository;
+import com.digitalfactory.bookstore.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsBorrowConcurrency {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 400;
+    private static final int STOCK = 150;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    public void concurrentBorrowNeverOversells() throws Exception {
+        Book book = newBook();
+        AtomicInteger borrowed = new AtomicInteger();
+
+        long elapsed = runConcurrently(() -> {
+            try {
+                transactionService.borrowBook(Transaction.builder()
+                        .book(Book.builder().id(book.getId()).build())
+                        .return_date(Timestamp.from(Instant.now()))
+                        .build());
+                borrowed.incrementAndGet();
+            } catch (Exception e) {
+                // out of stock
+            }
+        });
+
+        log.info("conditional update: {} borrows of {} attempts, {} borrows/sec",
+                borrowed.get(), ATTEMPTS, perSecond(ATTEMPTS, elapsed));
+        assertEquals(STOCK, borrowed.get());
+        assertEquals(0, bookRepository.findById(book.getId()).get().getAmount().compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    public void readModifyWriteBaseline() throws Exception {
+        Book book = newBook();
+        AtomicInteger borrowed = new AtomicInteger();
+
+        // the previous borrow path: read the book, check and decrement in memory, write it back
+        long elapsed = runConcurrently(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Book bk = bookRepository.findById(book.getId()).get();
+                    if (bk.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                        throw new IllegalStateException("BookNotAvailable");
+                    }
+                    transactionRepository.save(Transaction.builder()
+                            .book(bk)
+                            .user(userRepository.findByUsername("user").get())
+                            .return_date(Timestamp.from(Instant.now()))
+                            .trx_date(Timestamp.from(Instant.now()))
+                            .build());
+                    bk.setAmount(bk.getAmount().subtract(BigDecimal.ONE));
+                    bookRepository.save(bk);
+                });
+                borrowed.incrementAndGet();
+            } catch (Exception e) {
+                // out of stock or write conflict
+            }
+        });
+
+        log.info("read-modify-write: {} borrows of {} attempts for {} copies, {} borrows/sec",
+                borrowed.get(), ATTEMPTS, STOCK, perSecond(ATTEMPTS, elapsed));
+    }
+
+    private Book newBook() {
+        return bookRepository.save(Book.builder()
+                .book_category(bookCategoryRepository.findById(1L).get())
+                .name("Stress")
+                .writer_name("Stress")
+                .amount(new BigDecimal(STOCK))
+                .build());
+    }
+
+    private long runConcurrently(Runnable borrow) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger remaining = new AtomicInteger(ATTEMPTS);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Callable<Void> worker = () -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken("user", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+                start.await();
+                while (remaining.getAndDecrement() > 0) {
+                    borrow.run();
+                }
+                SecurityContextHolder.clearContext();
+                return null;
+            };
+            futures.add(executor.submit(worker));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return count * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,70 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "catalog-versions.source=database")
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+public class IntegrationTestsCatalogVersions {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        token = given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username("admin").password("password").build())
+                .when().post("/auth/login")
+                .andReturn().jsonPath().getString("token");
+    }
+
+    @Test
+    public void changesMadeByAnotherInstanceChangeTheListTags() throws Exception {
+        String books = etagOf("/v1/api/books");
+        String categories = etagOf("/v1/api/book-categories");
+        assertEquals(books, etagOf("/v1/api/books"));
+
+        // straight to the database, as another instance would
+        jdbcTemplate.update("update book set amount = amount + 1, version = version + 1 where id = 4");
+        jdbcTemplate.update("update book_category set version = version + 1 where id = 1");
+
+        assertNotEquals(books, etagOf("/v1/api/books"));
+        assertNotEquals(categories, etagOf("/v1/api/book-categories"));
+    }
+
+    private String etagOf(String path) {
+        return given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get(path)
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().header("ETag");
+    }
+}
@@ -0,0 +1,207 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.User;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.repository.UserRepository;
+import com.digitalfactory.bookstore.service.enums.UserType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Logs in synthetic customers and sends them a mix of catalog reads, borrows and returns at a fixed arrival rate, then
+ * writes latency percentiles, throughput and errors per endpoint to a JSON report. Only runs when asked for, every
+ * knob is a system property:
+ * {@code mvn test -Dtest=IntegrationTestsLoadMix -Dload-tests=true -Dload.rate=200 -Dload.duration=60
+ * -Dload.mix=catalog:80,borrow:10,return:10 -Dload.max-p99-ms=250}.
+ * Runs on an in-memory database unless {@code -Dload.datasource-url} points at a local one, for example
+ * {@code jdbc:postgresql://localhost:5432/digitalfactory}.
+ */
+// per-request logging would be what is measured
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.datasource.url=${load.datasource-url:jdbc:h2:mem:load;DB_CLOSE_DELAY=-1}",
+        "spring.jpa.show_sql=false",
+        "logging.level.org.springframework.security=INFO",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@EnabledIfSystemProperty(named = "load-tests", matches = "true")
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsLoadMix {
+
+    private static final int USERS = Integer.getInteger("load.users", 50);
+    private static final int RATE = Integer.getInteger("load.rate", 100);
+    private static final Duration WARM_UP = Duration.ofSeconds(Integer.getInteger("load.warm-up", 10));
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration", 30));
+    private static final String MIX = System.getProperty("load.mix", "catalog:80,borrow:10,return:10");
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "target/load-test-report.json"));
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+    private static final double MAX_P99_MILLIS = Double.parseDouble(System.getProperty("load.max-p99-ms", "Infinity"));
+
+    private static final String PASSWORD = "password";
+    private static final int TITLES = 50;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    @Autowired
+    PasswordEncoder passwordEncoder;
+
+    private LoadTest loadTest;
+
+    private List<String> tokens;
+
+    private List<Long> bookIds;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        loadTest = new LoadTest(port);
+        // one hash for everybody, encoding is deliberately slow
+        String password = passwordEncoder.encode(PASSWORD);
+        List<User> users = userRepository.saveAll(IntStream.range(0, USERS)
+                .mapToObj(i -> User.builder()
+                        .username("load-" + i)
+                        .password(password)
+                        .address("load")
+                        .phone("0100" + i)
+                        .civilId("load-" + i)
+                        .email("load-" + i + "@example.com")
+                        .type(UserType.CUSTOMER.getValue())
+                        .roles(Arrays.asList("ROLE_USER"))
+                        .build())
+                .collect(Collectors.toList()));
+        tokens = new ArrayList<>();
+        for (User user : users) {
+            tokens.add(loadTest.login(user.getUsername(), PASSWORD));
+        }
+        // every borrow could succeed, so errors are the server's and not an empty shelf
+        long copies = (long) RATE * (WARM_UP.toSeconds() + DURATION.toSeconds()) / TITLES + 1;
+        bookIds = bookRepository.saveAll(IntStream.range(0, TITLES)
+                        .mapToObj(i -> Book.builder()
+                                .book_category(bookCategoryRepository.findById(1L + i % 5).get())
+                                .name("Load " + i)
+                                .writer_name("Load")
+                                .amount(new BigDecimal(copies))
+                                .build())
+                        .collect(Collectors.toList()))
+                .stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void mix() throws Exception {
+        LoadTest.Report report = loadTest.runAtRate(RATE, WARM_UP, DURATION, new Mix());
+        report.endpoints().forEach(endpoint -> log.info("{}", endpoint));
+        report.write(REPORT);
+        log.info("report written to {}", REPORT.toAbsolutePath());
+        for (LoadTest.Endpoint endpoint : report.endpoints()) {
+            assertTrue(endpoint.errorRate() <= MAX_ERROR_RATE, endpoint::toString);
+            assertTrue(endpoint.p99Millis() <= MAX_P99_MILLIS, endpoint::toString);
+        }
+    }
+
+    /**
+     * Picks the next call from the weighted mix, with a seeded random so runs are comparable. A return gives back a
+     * copy an earlier borrow took, as the same user; with nothing borrowed yet it borrows instead.
+     */
+    private class Mix implements Supplier<LoadTest.Call> {
+
+        private final Random random = new Random(SEED);
+
+        private final String returnDate = Instant.now().plus(14, ChronoUnit.DAYS).toString();
+
+        private final Queue<Borrowed> borrowed = new ConcurrentLinkedQueue<>();
+
+        private final int catalog;
+
+        private final int borrow;
+
+        private final int total;
+
+        Mix() {
+            int catalog = 0, borrow = 0, total = 0;
+            for (String part : MIX.split(",")) {
+                String[] weight = part.trim().split(":");
+                int value = Integer.parseInt(weight[1].trim());
+                switch (weight[0].trim()) {
+                    case "catalog" -> catalog = value;
+                    case "borrow" -> borrow = value;
+                    case "return" -> {
+                    }
+                    default -> throw new IllegalArgumentException("unknown operation in load.mix: " + weight[0]);
+                }
+                total += value;
+            }
+            this.catalog = catalog;
+            this.borrow = borrow;
+            this.total = total;
+        }
+
+        @Override
+        public LoadTest.Call get() {
+            String token = tokens.get(random.nextInt(tokens.size()));
+            Long bookId = bookIds.get(random.nextInt(bookIds.size()));
+            int pick = random.nextInt(total);
+            if (pick < catalog) {
+                return switch (random.nextInt(3)) {
+                    case 0 -> new LoadTest.Call("GET /v1/api/book-pageable",
+                            loadTest.get(token, "/v1/api/book-pageable?size=20&page=" + random.nextInt(3)), null);
+                    case 1 -> new LoadTest.Call("GET /v1/api/book/{id}",
+                            loadTest.get(token, "/v1/api/book/" + bookId), null);
+                    default -> new LoadTest.Call("GET /v1/api/available-books",
+                            loadTest.get(token, "/v1/api/available-books?size=20"), null);
+                };
+            }
+            Borrowed toReturn = pick < catalog + borrow ? null : borrowed.poll();
+            if (toReturn != null) {
+                return new LoadTest.Call("POST /v1/api/customer/return-book",
+                        loadTest.post(toReturn.token(), "/v1/api/customer/return-book", body(toReturn.bookId())), null);
+            }
+            return new LoadTest.Call("POST /v1/api/customer/request-book",
+                    loadTest.post(token, "/v1/api/customer/request-book", body(bookId)),
+                    () -> borrowed.add(new Borrowed(token, bookId)));
+        }
+
+        private String body(Long bookId) {
+            return "{\"book\":{\"id\":" + bookId + "},\"return_date\":\"" + returnDate + "\"}";
+        }
+    }
+
+    private record Borrowed(String token, Long bookId) {
+    }
+}
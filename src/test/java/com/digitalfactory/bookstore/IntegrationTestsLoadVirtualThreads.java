@@ -0,0 +1,102 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * The same load as {@link IntegrationTestsLoadPlatformThreads} with a virtual thread per request, for comparing
+ * throughput and tail latency. Runs on Java 21 and later only, and like it only with {@code -Dload-tests=true}.
+ */
+// per-request logging would be what is measured
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "execution.mode=virtual",
+        "spring.jpa.show_sql=false",
+        "logging.level.org.springframework.security=INFO",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase
+@EnabledForJreRange(min = JRE.JAVA_21)
+@EnabledIfSystemProperty(named = "load-tests", matches = "true")
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsLoadVirtualThreads {
+
+    private static final int CLIENTS = 2000;
+    private static final int REQUESTS = 10_000;
+    private static final int TITLES = 20;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    private LoadTest loadTest;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        token = given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username("admin").password("password").build())
+                .when().post("/auth/login")
+                .andReturn().jsonPath().getString("token");
+        loadTest = new LoadTest(port);
+    }
+
+    @Test
+    public void catalogReads() throws Exception {
+        LoadTest.Endpoint result = loadTest.run(CLIENTS, REQUESTS, i -> loadTest.get(token, "/v1/api/book-pageable?size=20&page=" + i % 5));
+        log.info("virtual threads, catalog reads: {}", result);
+        assertEquals(0, result.errors());
+    }
+
+    @Test
+    public void borrows() throws Exception {
+        // enough copies for the warm-up round and the timed requests, spread so the titles are not one hot row
+        List<Long> ids = IntStream.range(0, TITLES)
+                .mapToObj(i -> bookRepository.save(Book.builder()
+                        .book_category(bookCategoryRepository.findById(1L).get())
+                        .name("Load " + i)
+                        .writer_name("Load")
+                        .amount(new BigDecimal((CLIENTS + REQUESTS) / TITLES))
+                        .build()).getId())
+                .collect(Collectors.toList());
+        String returnDate = Instant.now().plus(14, ChronoUnit.DAYS).toString();
+        LoadTest.Endpoint result = loadTest.run(CLIENTS, REQUESTS,
+                i -> loadTest.post(token, "/v1/api/customer/request-book", "{\"book\":{\"id\":" + ids.get(i % TITLES) + "},\"return_date\":\"" + returnDate + "\"}"));
+        log.info("virtual threads, borrows: {}", result);
+        assertEquals(0, result.errors());
+    }
+}
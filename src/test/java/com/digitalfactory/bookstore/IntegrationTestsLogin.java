@@ -0,0 +1,127 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.User;
+import com.digitalfactory.bookstore.repository.UserRepository;
+import com.digitalfactory.bookstore.service.enums.UserType;
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsLogin {
+
+    private static final int CLIENTS = 16;
+    private static final int LOGINS = 100;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+    }
+
+    @Test
+    public void wrongPasswordIsUnauthorized() throws Exception {
+        assertEquals(HttpStatus.SC_UNAUTHORIZED, login("user", "wrong"));
+    }
+
+    @Test
+    public void missingUsernameIsUnauthorized() throws Exception {
+        int status = given()
+                .contentType(ContentType.JSON)
+                .body("{\"password\":\"password\"}")
+                .when().post("/auth/login")
+                .andReturn().statusCode();
+        assertEquals(HttpStatus.SC_UNAUTHORIZED, status);
+        assertEquals(HttpStatus.SC_UNAUTHORIZED, login(" ", "password"));
+    }
+
+    @Test
+    public void repeatedFailuresAreThrottled() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HttpStatus.SC_UNAUTHORIZED, login("intruder", "guess" + i));
+        }
+        assertEquals(429, login("intruder", "guess"));
+        // other usernames are not affected
+        assertEquals(HttpStatus.SC_OK, login("user", "password"));
+    }
+
+    @Test
+    public void outdatedHashIsUpgradedOnLogin() throws Exception {
+        userRepository.save(User.builder()
+                .username("legacy")
+                .password("{noop}password")
+                .address("cairo-egypt")
+                .phone("01000000000")
+                .civilId("29000000000000")
+                .email("l@gmail.com")
+                .type(UserType.CUSTOMER.getValue())
+                .roles(Arrays.asList("ROLE_USER"))
+                .build());
+
+        assertEquals(HttpStatus.SC_OK, login("legacy", "password"));
+        assertTrue(userRepository.findByUsername("legacy").get().getPassword().startsWith("{bcrypt}"));
+        assertEquals(HttpStatus.SC_OK, login("legacy", "password"));
+    }
+
+    @Test
+    public void concurrentLoginLatency() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int i = 0; i < LOGINS; i++) {
+            results.add(clients.submit(() -> {
+                long start = System.nanoTime();
+                int status = login("user", "password");
+                return new long[]{status, System.nanoTime() - start};
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<long[]> result : results) {
+            long[] statusAndLatency = result.get();
+            assertEquals(HttpStatus.SC_OK, statusAndLatency[0]);
+            latencies.add(statusAndLatency[1]);
+        }
+        clients.shutdown();
+
+        Collections.sort(latencies);
+        log.info("{} logins from {} clients: p50 {} ms, p99 {} ms", LOGINS, CLIENTS,
+                latencies.get(LOGINS / 2) / 1_000_000, latencies.get(LOGINS * 99 / 100) / 1_000_000);
+    }
+
+    private int login(String username, String password) {
+        return given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username(username).password(password).build())
+                .when().post("/auth/login")
+                .andReturn().statusCode();
+    }
+}
@@ -0,0 +1,128 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@AutoConfigureTestDatabase
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsMetrics {
+
+    @LocalServerPort
+    private int port;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        token = given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username("user").password("password").build())
+                .when().post("/auth/login")
+                .andReturn().jsonPath().getString("token");
+    }
+
+    @Test
+    public void borrowOutcomesAreCounted() throws Exception {
+        Book book = bookRepository.findById(4L).get();
+        book.setAmount(new BigDecimal(10));
+        bookRepository.save(book);
+        borrow(4L).then().assertThat().statusCode(HttpStatus.SC_CREATED);
+        // the demo data has no copies of the first book
+        borrow(1L);
+
+        given()
+                .port(managementPort)
+                .when()
+                .get("/actuator/prometheus")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body(containsString("bookstore_borrows_total{application=\"bookstore\",outcome=\"success\",}"))
+                .body(containsString("bookstore_borrows_total{application=\"bookstore\",outcome=\"out_of_stock\",}"));
+    }
+
+    // the embedded test database is not pooled by Hikari, so no hikaricp_* here
+    @Test
+    public void requestsServicesTokensAndHibernateAreTimed() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/book/2")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK);
+
+        given()
+                .port(managementPort)
+                .when()
+                .get("/actuator/prometheus")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body(containsString("http_server_requests_seconds_bucket{application=\"bookstore\",error=\"none\",exception=\"none\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/v1/api/book/{id}\""))
+                .body(containsString("bookstore_service_seconds_count{application=\"bookstore\",class=\"com.digitalfactory.bookstore.service.impl.BookServiceImpl\",exception=\"none\",method=\"findOne\",}"))
+                .body(containsString("bookstore_jwt_authentication_seconds_count{application=\"bookstore\",outcome=\"verified\",}"))
+                .body(containsString("hibernate_second_level_cache_requests_total"));
+    }
+
+    @Test
+    public void metricsAreNotServedOnThePublicPort() throws Exception {
+        given()
+                .when()
+                .get("/actuator/prometheus")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_UNAUTHORIZED);
+    }
+
+    private Response borrow(Long bookId) {
+        return given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(Transaction.builder()
+                        .book(Book.builder().id(bookId).build())
+                        .return_date(Timestamp.from(Instant.now()))
+                        .build())
+                .when()
+                .post("/v1/api/customer/request-book");
+    }
+}
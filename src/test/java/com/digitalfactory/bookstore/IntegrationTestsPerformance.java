@@ -0,0 +1,325 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.domain.User;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.seed.SyntheticDataGenerator;
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Statement, entity and latency budgets of every REST endpoint of the catalog and the transactions, against a seeded
+ * catalog big enough that loading a table instead of a page shows.
+ *
+ * Statements and entities are counted by the Hibernate statistics, so the stock updates made through JDBC are not in
+ * them. The budgets are the worst of the measured runs, the latencies are medians and loose enough for a busy build
+ * machine: they catch a query that went from a page to a table, not a few milliseconds.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "seed.categories=" + IntegrationTestsPerformance.CATEGORIES,
+        "seed.books=" + IntegrationTestsPerformance.BOOKS,
+        "seed.users=2000",
+        "seed.transactions=20000",
+        "spring.jpa.show_sql=false",
+        "logging.level.com.digitalfactory.bookstore=INFO"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles(SyntheticDataGenerator.PROFILE)
+@Slf4j
+public class IntegrationTestsPerformance {
+
+    private static final int WARM_UP = 3;
+
+    private static final int RUNS = 9;
+
+    static final int CATEGORIES = 20;
+
+    static final int BOOKS = 5000;
+
+    // the seeded books and their categories, with room for the ones the write endpoints add
+    private static final int CATALOG = BOOKS + CATEGORIES + 100;
+
+    // generated with plenty of copies, the borrow endpoints take and put back these
+    private static final long[] STOCKED = {11, 12, 13, 14};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    private Statistics statistics;
+
+    private String adminToken;
+
+    private String customerToken;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        adminToken = login("admin");
+        customerToken = login("user-2");
+        jdbcTemplate.update("update book set amount = 1000 where id in (11, 12, 13, 14)");
+    }
+
+    @Test
+    public void bookEndpointsStayWithinBudget() {
+        String csv = "name,writer_name,category,amount\n"
+                + "The Imported River,Amira Stone,novel,3\n"
+                + "The Imported Garden,James Reed,crime,2\n";
+        String ndjson = "{\"name\":\"The Imported Tower\",\"writer_name\":\"Omar Hart\",\"category\":\"novel\",\"amount\":1}\n";
+        assertAll(
+                budget("POST /book", 1, 0, 250, () -> admin()
+                        .body(book(null, "The New Harbor"))
+                        .post("/v1/api/book")),
+                budget("POST /book-import csv", 1, 0, 250, () -> admin()
+                        .contentType("text/csv")
+                        .body(csv)
+                        .post("/v1/api/book-import")),
+                budget("POST /book-import ndjson", 1, 0, 250, () -> admin()
+                        .contentType("application/x-ndjson")
+                        .body(ndjson.getBytes(StandardCharsets.UTF_8))
+                        .post("/v1/api/book-import")),
+                budget("PUT /book/{id}", 1, 2, 250, () -> admin()
+                        .body(book(21L, "The Renamed Harbor"))
+                        .put("/v1/api/book/21")),
+                budget("PATCH /book/{id}", 1, 2, 250, () -> admin()
+                        .body(book(22L, "The Patched Harbor"))
+                        .patch("/v1/api/book/22")),
+                budget("GET /book/{id}", 1, 1, 250, () -> customer()
+                        .get("/v1/api/book/23")),
+                budget("GET /book-search", 1, 20, 250, () -> customer()
+                        .get("/v1/api/book-search?q=harbor")),
+                budget("GET /book-autocomplete", 1, 0, 250, () -> customer()
+                        .get("/v1/api/book-autocomplete?prefix=The Sil")),
+                budget("GET /book-keyset", 2, 21, 250, () -> customer()
+                        .get("/v1/api/book-keyset?size=20")),
+                budget("GET /book-pageable", 3, 20, 250, () -> customer()
+                        .get("/v1/api/book-pageable?size=20")),
+                budget("GET /books", 2, CATALOG, 2500, () -> customer()
+                        .get("/v1/api/books")),
+                budget("GET /books-stream", 1, CATALOG, 2500, () -> customer()
+                        .get("/v1/api/books-stream")),
+                budget("DELETE /book/{id}", 1, 0, 250,
+                        () -> bookRepository.save(book(null, "The Doomed Harbor")).getId(),
+                        id -> admin()
+                                .delete("/v1/api/book/" + id)),
+                budget("GET /available-books", 3, 20, 250, () -> customer()
+                        .get("/v1/api/available-books?size=20")),
+                budget("GET /available-books-category/{id}", 3, 20, 250, () -> customer()
+                        .get("/v1/api/available-books-category/3?size=20"))
+                // available-books-stream is a server-sent event stream that does not end, it has no latency to bound
+        );
+    }
+
+    @Test
+    public void bookCategoryEndpointsStayWithinBudget() {
+        assertAll(
+                budget("POST /book-category", 1, 0, 250, () -> admin()
+                        .body(BookCategory.builder().name("category-" + System.nanoTime()).build())
+                        .post("/v1/api/book-category")),
+                budget("PUT /book-category/{id}", 1, 1, 250, () -> admin()
+                        .body(BookCategory.builder().id(19L).name("adventure-renamed").build())
+                        .put("/v1/api/book-category/19")),
+                budget("PATCH /book-category/{id}", 1, 1, 250, () -> admin()
+                        .body(BookCategory.builder().id(20L).name("cooking-renamed").build())
+                        .patch("/v1/api/book-category/20")),
+                budget("GET /book-category/{id}", 1, 1, 250, () -> customer()
+                        .get("/v1/api/book-category/2")),
+                budget("GET /book-category-keyset", 1, 21, 250, () -> customer()
+                        .get("/v1/api/book-category-keyset?size=20")),
+                budget("GET /book-category-pageable", 2, 20, 250, () -> customer()
+                        .get("/v1/api/book-category-pageable?size=20")),
+                budget("GET /book-categories", 1, CATEGORIES, 250, () -> customer()
+                        .get("/v1/api/book-categories")),
+                budget("DELETE /book-category/{id}", 1, 0, 250,
+                        () -> bookCategoryRepository.save(BookCategory.builder().name("doomed-" + System.nanoTime()).build()).getId(),
+                        id -> admin()
+                                .delete("/v1/api/book-category/" + id))
+        );
+    }
+
+    @Test
+    public void transactionEndpointsStayWithinBudget() {
+        String basket = "[" + borrowBody(STOCKED[2]) + "," + borrowBody(STOCKED[3]) + "]";
+        assertAll(
+                budget("POST /transaction", 1, 0, 250, () -> admin()
+                        .body(transaction(null))
+                        .post("/v1/api/transaction")),
+                budget("PUT /transaction/{id}", 4, 1, 250, () -> admin()
+                        .body(transaction(31L))
+                        .put("/v1/api/transaction/31")),
+                budget("PATCH /transaction/{id}", 4, 1, 250, () -> admin()
+                        .body(transaction(32L))
+                        .patch("/v1/api/transaction/32")),
+                budget("GET /transaction/{id}", 1, 0, 250, () -> customer()
+                        .get("/v1/api/transaction/33")),
+                budget("GET /transaction-keyset", 1, 0, 500, () -> customer()
+                        .get("/v1/api/transaction-keyset?size=20")),
+                budget("GET /transaction-pageable", 2, 0, 250, () -> customer()
+                        .get("/v1/api/transaction-pageable?size=20")),
+                budget("GET /transactions", 1, 0, 1000, () -> customer()
+                        .get("/v1/api/transactions")),
+                budget("GET /transactions-stream", 1, 0, 1000, () -> customer()
+                        .get("/v1/api/transactions-stream")),
+                budget("GET /transactions-export", 1, 0, 500, () -> customer()
+                        .get("/v1/api/transactions-export?from=2025-12-01T00:00:00Z&userId=2")),
+                budget("DELETE /transaction/{id}", 2, 1, 250,
+                        () -> admin()
+                                .body(transaction(null))
+                                .post("/v1/api/transaction")
+                                .jsonPath().getLong("id"),
+                        id -> admin()
+                                .delete("/v1/api/transaction/" + id)),
+                budget("POST /customer/request-book", 1, 0, 250, () -> customer()
+                        .body(borrowBody(STOCKED[0]))
+                        .post("/v1/api/customer/request-book")),
+                budget("POST /customer/return-book", 1, 0, 250,
+                        () -> {
+                            customer().body(borrowBody(STOCKED[1])).post("/v1/api/customer/request-book");
+                            return STOCKED[1];
+                        },
+                        id -> customer()
+                                .body(borrowBody(id))
+                                .post("/v1/api/customer/return-book")),
+                budget("POST /customer/request-books", 1, 0, 250, () -> customer()
+                        .body(basket)
+                        .post("/v1/api/customer/request-books")),
+                budget("POST /customer/return-books", 1, 0, 250,
+                        () -> {
+                            customer().body(basket).post("/v1/api/customer/request-books");
+                            return 0;
+                        },
+                        ignored -> customer()
+                                .body(basket)
+                                .post("/v1/api/customer/return-books"))
+        );
+    }
+
+    private Executable budget(String endpoint, int statements, int entities, long medianMillis, Supplier<Response> call) {
+        return budget(endpoint, statements, entities, medianMillis, () -> 0, ignored -> call.get());
+    }
+
+    /**
+     * Call an endpoint a few times to warm it up, then measure it. The worst run must stay within the statement and
+     * entity budgets, the median within the latency one.
+     *
+     * @param prepare run before each call and outside the measurement, what it returns is passed to the call.
+     */
+    private Executable budget(String endpoint, int statements, int entities, long medianMillis,
+                              LongSupplier prepare, LongFunction<Response> call) {
+        long maxStatements = 0;
+        long maxEntities = 0;
+        long[] millis = new long[RUNS];
+        for (int run = -WARM_UP; run < RUNS; run++) {
+            long argument = prepare.getAsLong();
+            statistics.clear();
+            long begin = System.nanoTime();
+            Response response = call.apply(argument);
+            long elapsed = (System.nanoTime() - begin) / 1_000_000;
+            int status = response.statusCode();
+            assertTrue(status >= 200 && status < 300, endpoint + " answered " + status + ": " + response.asString());
+            if (run >= 0) {
+                millis[run] = elapsed;
+                maxStatements = Math.max(maxStatements, statistics.getPrepareStatementCount());
+                maxEntities = Math.max(maxEntities, statistics.getEntityLoadCount());
+            }
+        }
+        Arrays.sort(millis);
+        long median = millis[RUNS / 2];
+        log.info("{}: {} statements, {} entities, median {} ms", endpoint, maxStatements, maxEntities, median);
+        long measuredStatements = maxStatements;
+        long measuredEntities = maxEntities;
+        return () -> assertAll(endpoint,
+                () -> assertTrue(measuredStatements <= statements,
+                        endpoint + " issued " + measuredStatements + " statements, the budget is " + statements),
+                () -> assertTrue(measuredEntities <= entities,
+                        endpoint + " loaded " + measuredEntities + " entities, the budget is " + entities),
+                () -> assertTrue(median <= medianMillis,
+                        endpoint + " took " + median + " ms at the median, the budget is " + medianMillis));
+    }
+
+    private RequestSpecification admin() {
+        return given().header("Authorization", "Bearer " + adminToken).contentType(ContentType.JSON);
+    }
+
+    private RequestSpecification customer() {
+        return given().header("Authorization", "Bearer " + customerToken).contentType(ContentType.JSON);
+    }
+
+    private String login(String username) {
+        return given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username(username).password("password").build())
+                .when().post("/auth/login")
+                .andReturn().jsonPath().getString("token");
+    }
+
+    private Book book(Long id, String name) {
+        return Book.builder()
+                .id(id)
+                .book_category(bookCategoryRepository.findById(1L).get())
+                .name(name)
+                .writer_name("Karim Novak")
+                .amount(BigDecimal.TEN)
+                .build();
+    }
+
+    private Transaction transaction(Long id) {
+        Instant now = Instant.now();
+        return Transaction.builder()
+                .id(id)
+                .user(User.builder().id(2L).build())
+                .book(Book.builder().id(STOCKED[0]).build())
+                .trx_date(Timestamp.from(now))
+                .return_date(Timestamp.from(now.plusSeconds(14 * 24 * 3600)))
+                .build();
+    }
+
+    private static String borrowBody(long bookId) {
+        return "{\"book\":{\"id\":" + bookId + "},\"return_date\":" + Instant.now().plusSeconds(14 * 24 * 3600).toEpochMilli() + "}";
+    }
+}
@@ -0,0 +1,245 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.web.AuthenticationRequest;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "statement-budget.budgets.[GET\\ /v1/api/transaction-pageable]=1"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+@ExtendWith(OutputCaptureExtension.class)
+@Slf4j
+public class IntegrationTestsQueryCount {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    private Statistics statistics;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        token = given()
+                .contentType(ContentType.JSON)
+                .body(AuthenticationRequest.builder().username("admin").password("password").build())
+                .when().post("/auth/login")
+                .andReturn().jsonPath().getString("token");
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void transactionListIsOneStatement() throws Exception {
+        assertEquals(1, statementsFor("/v1/api/transactions"));
+    }
+
+    @Test
+    public void transactionPageIsSelectAndCount() throws Exception {
+        assertEquals(2, statementsFor("/v1/api/transaction-pageable?size=3"));
+    }
+
+    @Test
+    public void transactionIsOneStatement() throws Exception {
+        assertEquals(1, statementsFor("/v1/api/transaction/1"));
+    }
+
+    @Test
+    public void statementsAreReportedInHeaders() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/transactions")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .header("X-Statement-Count", "1")
+                .header("Server-Timing", startsWith("db;dur="));
+    }
+
+    @Test
+    public void overBudgetIsLogged(CapturedOutput output) throws Exception {
+        statementsFor("/v1/api/transaction-pageable?size=3");
+        awaitLogged(output, "GET /v1/api/transaction-pageable ran 2 statements");
+    }
+
+    @Test
+    public void repeatedStatementIsLoggedAsNPlusOne(CapturedOutput output) throws Exception {
+        // each category of the listed books is then loaded on its own
+        entityManagerFactory.getCache().evictAll();
+        statementsFor("/v1/api/books");
+        awaitLogged(output, "likely N+1");
+    }
+
+    @Test
+    public void bookIsServedFromSecondLevelCache() throws Exception {
+        statementsFor("/v1/api/book/2");
+        assertEquals(0, statementsFor("/v1/api/book/2"));
+    }
+
+    @Test
+    public void bookCategoriesAreServedFromQueryCache() throws Exception {
+        statementsFor("/v1/api/book-categories");
+        assertEquals(0, statementsFor("/v1/api/book-categories"));
+    }
+
+    @Test
+    public void notModifiedBookListRunsNoStatement() throws Exception {
+        String etag = etagOf("/v1/api/books");
+        statistics.clear();
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_NOT_MODIFIED);
+        // both versions are kept in memory
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void borrowChangesBookTag() throws Exception {
+        Book book = bookRepository.findById(4L).get();
+        book.setAmount(new BigDecimal(10));
+        bookRepository.save(book);
+        String etag = etagOf("/v1/api/book/4");
+        borrow();
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/book/4")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK);
+    }
+
+    @Test
+    public void borrowChangesAvailableBooksTag() throws Exception {
+        Book book = bookRepository.findById(4L).get();
+        book.setAmount(new BigDecimal(10));
+        bookRepository.save(book);
+        String etag = etagOf("/v1/api/available-books");
+        borrow();
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/available-books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK);
+    }
+
+    @Test
+    public void borrowResolvesUserFromCache() throws Exception {
+        Book book = bookRepository.findById(4L).get();
+        book.setAmount(new BigDecimal(10));
+        bookRepository.save(book);
+        borrow();
+        statistics.clear();
+        borrow();
+        // only the transaction insert, the stock update goes through JDBC and the user comes from the cache
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private void borrow() {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(Transaction.builder()
+                        .book(Book.builder().id(4L).build())
+                        .return_date(Timestamp.from(Instant.now()))
+                        .build())
+                .when()
+                .post("/v1/api/customer/request-book")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_CREATED);
+    }
+
+    private String etagOf(String path) {
+        return given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get(path)
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().header("ETag");
+    }
+
+    // the filter reports once the response has gone out
+    private static void awaitLogged(CapturedOutput output, String text) throws InterruptedException {
+        for (int i = 0; i < 50 && !output.getOut().contains(text); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(output.getOut().contains(text));
+    }
+
+    private long statementsFor(String path) {
+        statistics.clear();
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get(path)
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK);
+        long count = statistics.getPrepareStatementCount();
+        log.debug("{} statements for {}", count, path);
+        return count;
+    }
+}
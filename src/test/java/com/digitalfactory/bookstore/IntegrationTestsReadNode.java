@@ -0,0 +1,151 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.readnode.ReadNodeApplication;
+import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(classes = ReadNodeApplication.class, webEnvironment = RANDOM_PORT, properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///readnode;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:read-node/schema.sql",
+        "spring.sql.init.data-locations=classpath:read-node/data.sql"
+})
+@ActiveProfiles(ReadNodeApplication.PROFILE)
+@Slf4j
+public class IntegrationTestsReadNode {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    JwtTokenProvider jwtTokenProvider;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() {
+        RestAssured.port = this.port;
+        // the read node has no login, tokens come from the main application
+        token = jwtTokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    @Test
+    public void getBookWithItsCategory() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book/4")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("name", equalTo("Carrie"))
+                .body("version", equalTo(1))
+                .body("book_category.name", equalTo("horror"));
+    }
+
+    @Test
+    public void unknownBookIsNotFound() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book/99")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_NOT_FOUND);
+    }
+
+    @Test
+    public void availableBooksArePaged() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/available-books?size=2")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("Dune", "It"))
+                .body("totalElements", equalTo(3));
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/available-books-category/2")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("It", "Carrie"));
+    }
+
+    @Test
+    public void booksStreamAsNdjson() throws Exception {
+        String body = given()
+                .header("Authorization", "Bearer "+token)
+                .accept("application/x-ndjson")
+                .when()
+                .get("/v1/api/books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .contentType("application/x-ndjson")
+                .extract().asString();
+        assertEquals(4, body.lines().count());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .accept(ContentType.JSON)
+                .when()
+                .get("/v1/api/book-categories")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("name", contains("novel", "horror"));
+    }
+
+    @Test
+    public void readsNeedATokenAndWritesAreRefused() throws Exception {
+        given()
+                .when()
+                .get("/v1/api/books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_UNAUTHORIZED);
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body("{\"name\":\"test\"}")
+                .when()
+                .post("/v1/api/book-category")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_FORBIDDEN);
+    }
+}
@@ -0,0 +1,99 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.repository.TransactionRepository;
+import com.digitalfactory.bookstore.repository.UserRepository;
+import com.digitalfactory.bookstore.seed.SeedProperties;
+import com.digitalfactory.bookstore.seed.SyntheticData;
+import com.digitalfactory.bookstore.seed.SyntheticDataGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "seed.categories=5",
+        "seed.books=500",
+        "seed.users=200",
+        "seed.transactions=20000",
+        "seed.batch-size=100"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles(SyntheticDataGenerator.PROFILE)
+@Slf4j
+public class IntegrationTestsSeed {
+
+    @Autowired
+    SeedProperties seedProperties;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void everyRowIsInserted() {
+        assertEquals(5, bookCategoryRepository.count());
+        assertEquals(500, bookRepository.count());
+        assertEquals(200, userRepository.count());
+        assertEquals(20000, transactionRepository.count());
+        assertEquals(201, jdbcTemplate.queryForObject("select count(*) from user_roles", Long.class));
+    }
+
+    @Test
+    @Transactional(readOnly = true)
+    public void rowsFollowFromTheSeed() {
+        SyntheticData data = new SyntheticData(seedProperties);
+        for (long id : new long[]{1, 777, 20000}) {
+            SyntheticData.TransactionRow expected = data.transaction(id);
+            Transaction transaction = transactionRepository.findById(id).get();
+            assertEquals(expected.bookId(), transaction.getBook().getId());
+            assertEquals(expected.userId(), transaction.getUser().getId());
+            assertEquals(expected.trxDate(), transaction.getTrx_date());
+        }
+        assertEquals(data.book(321).name(), bookRepository.findById(321L).get().getName());
+        assertEquals("admin", userRepository.findById(1L).get().getUsername());
+    }
+
+    @Test
+    public void popularTitlesTakeMostBorrows() {
+        Long top = jdbcTemplate.queryForObject(
+                "select max(borrows) from (select count(*) borrows from transaction group by book_id) t", Long.class);
+        log.debug("most borrowed title: {} of 20000", top);
+        // uniform would be 40 each
+        assertTrue(top > 1000);
+    }
+
+    @Test
+    public void applicationAllocatesIdsAfterTheSeededOnes() {
+        Book book = bookRepository.save(Book.builder()
+                .book_category(bookCategoryRepository.findById(1L).get())
+                .name("After seeding")
+                .writer_name("Writer")
+                .amount(BigDecimal.ONE)
+                .build());
+        assertTrue(book.getId() > 500);
+    }
+}
@@ -1,6 +1,10 @@
 package com.digitalfactory.bookstore;
 
+import com.digitalfactory.bookstore.domain.Book;
 import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.service.BookService;
+import com.digitalfactory.bookstore.service.dto.StockChange;
 import com.digitalfactory.bookstore.web.AuthenticationRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.restassured.RestAssured;
@@ -13,12 +17,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 @AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
 @Slf4j
 public class IntegrationTestsWithAdmin {
     
@@ -27,6 +56,15 @@ public class IntegrationTestsWithAdmin {
     
     @Autowired
     ObjectMapper objectMapper;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
     
     private String token;
     
@@ -54,6 +92,306 @@ public class IntegrationTestsWithAdmin {
                 .statusCode(HttpStatus.SC_OK);
     }
     
+    @Test
+    public void importBooksFromCsv() throws Exception {
+        String csv = "name,writer_name,category,amount\n"
+                + "Dune,Frank Herbert,novel,7\n"
+                + "\"Dune, Messiah\",Frank Herbert,novel,3\n"
+                + "Beloved,Toni Morrison,horror,0\n"
+                + "Unknown,Nobody,NoSuchCategory,1\n";
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType("text/csv")
+                .body(csv)
+                .when()
+                .post("/v1/api/book-import")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("rows", equalTo(4))
+                .body("inserted", equalTo(2))
+                .body("updated", equalTo(1))
+                .body("rejected", equalTo(1))
+                .body("errors[0]", equalTo("row 4: CategoryNotFound"));
+    }
+
+    @Test
+    public void importBooksFromNdjson() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType("application/x-ndjson")
+                .body(("{\"name\":\"Emma\",\"writer_name\":\"Jane Austen\",\"category\":\"romantic\",\"amount\":2}\n"
+                        + "{\"name\":\"Emma\",\"writer_name\":\"Jane Austen\",\"category\":\"romantic\",\"amount\":-1}\n")
+                        .getBytes(StandardCharsets.UTF_8))
+                .when()
+                .post("/v1/api/book-import")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("inserted", equalTo(1))
+                .body("rejected", equalTo(1))
+                .body("errors[0]", equalTo("row 2: InvalidAmount"));
+    }
+
+    @Test
+    public void failedChunkIsReportedAndTheOthersKept() throws Exception {
+        // chunks of 500 rows; the second one holds an amount too wide for the column and is rolled back as a whole
+        StringBuilder csv = new StringBuilder("name,writer_name,category,amount\n");
+        for (int row = 1; row <= 1500; row++) {
+            csv.append("Chunked ").append(row).append(",Chunk Writer,novel,")
+                    .append(row == 750 ? "1e40" : "1").append('\n');
+        }
+        csv.append("x".repeat(256)).append(",Chunk Writer,novel,1\n");
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType("text/csv")
+                .body(csv.toString())
+                .when()
+                .post("/v1/api/book-import")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("rows", equalTo(1501))
+                .body("inserted", equalTo(1000))
+                .body("rejected", equalTo(501))
+                .body("errors[0]", startsWith("rows up to 1000: "))
+                .body("errors[1]", equalTo("row 1501: NameTooLong"));
+    }
+
+    @Test
+    public void streamAllTransactions() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/transactions-stream")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .contentType("application/x-ndjson")
+                .body(containsString("return_date"));
+    }
+
+    @Test
+    public void exportTransactionsAsCsv() throws Exception {
+        String csv = given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/transactions-export?userId=1&from=2000-01-01T00:00:00Z")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .contentType("text/csv")
+                .extract().asString();
+        String[] lines = csv.split("\n");
+        assertEquals("id,userId,username,bookId,bookName,return_date,trx_date,received_date", lines[0]);
+        assertTrue(lines.length > 1);
+        assertTrue(lines[1].contains(",user,"));
+    }
+
+    @Test
+    public void exportTransactionsAsGzip() throws Exception {
+        byte[] gzip = given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/transactions-export?gzip=true&to=2000-01-01T00:00:00Z")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .contentType("application/gzip")
+                .extract().asByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            // nothing before 2000, only the header row
+            assertEquals("id,userId,username,bookId,bookName,return_date,trx_date,received_date\n",
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void pageTransactionsWithCursor() throws Exception {
+        String cursor = given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/transaction-keyset?size=2")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.size()", equalTo(2))
+                .body("hasNext", equalTo(true))
+                .extract().path("nextCursor");
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/transaction-keyset?size=2&cursor=" + cursor)
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.size()", equalTo(2));
+    }
+
+    @Test
+    public void bookCategoryIsTaggedWithItsVersion() throws Exception {
+        Long id = given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(BookCategory.builder().name("etag-before").build())
+                .when()
+                .post("/v1/api/book-category")
+                .then()
+                .statusCode(HttpStatus.SC_CREATED)
+                .extract().jsonPath().getLong("id");
+        String etag = given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/book-category/" + id)
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().header("ETag");
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/book-category/" + id)
+                .then()
+                .statusCode(HttpStatus.SC_NOT_MODIFIED)
+                .header("ETag", etag);
+
+        // a stale tag is refused, the current one goes through and moves the tag on
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-Match", "\"999\"")
+                .contentType(ContentType.JSON)
+                .body(BookCategory.builder().id(id).name("etag-after").build())
+                .when()
+                .put("/v1/api/book-category/" + id)
+                .then()
+                .statusCode(HttpStatus.SC_PRECONDITION_FAILED);
+        String updated = given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-Match", etag)
+                .contentType(ContentType.JSON)
+                .body(BookCategory.builder().id(id).name("etag-after").build())
+                .when()
+                .put("/v1/api/book-category/" + id)
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .body("name", equalTo("etag-after"))
+                .extract().header("ETag");
+        assertNotEquals(etag, updated);
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/book-category/" + id)
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .header("ETag", updated);
+    }
+
+    @Test
+    public void bookListIsNotModifiedUntilTheCatalogChanges() throws Exception {
+        String etag = given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/books")
+                .then()
+                .statusCode(HttpStatus.SC_OK)
+                .extract().header("ETag");
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/books")
+                .then()
+                .statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(BookCategory.builder().name("etag-list").build())
+                .when()
+                .post("/v1/api/book-category")
+                .then()
+                .statusCode(HttpStatus.SC_CREATED);
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .header("If-None-Match", etag)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/books")
+                .then()
+                .statusCode(HttpStatus.SC_OK);
+    }
+
+    @Test
+    public void stockChangesAreStreamedForTheCategory() throws Exception {
+        List<BookCategory> categories = bookCategoryRepository.findAll();
+        BookCategory watched = categories.get(0);
+        BookCategory other = categories.get(1);
+        HttpRequest subscribe = HttpRequest.newBuilder(URI.create(
+                        "http://localhost:" + port + "/v1/api/available-books-stream?categoryId=" + watched.getId()))
+                .header("Authorization", "Bearer "+token)
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<Stream<String>> response = HttpClient.newHttpClient()
+                .sendAsync(subscribe, HttpResponse.BodyHandlers.ofLines())
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.SC_OK, response.statusCode());
+        try (Stream<String> lines = response.body()) {
+            CompletableFuture<StockChange> first = CompletableFuture.supplyAsync(() -> firstStockChange(lines.iterator()));
+
+            bookService.save(Book.builder().name("sse-other").writer_name("sse").amount(BigDecimal.ONE).book_category(other).build());
+            Long id = transactionTemplate.execute(status -> {
+                Book book = bookService.save(Book.builder()
+                        .name("sse-watched").writer_name("sse").amount(BigDecimal.ONE).book_category(watched).build());
+                book.setAmount(new BigDecimal(4));
+                return bookService.save(book).getId();
+            });
+
+            // the other category is filtered out, the changes within one commit arrive as one event
+            StockChange change = first.get(10, TimeUnit.SECONDS);
+            assertEquals(id, change.getBookId());
+            assertEquals(watched.getId(), change.getCategoryId());
+            assertEquals(0, new BigDecimal(4).compareTo(change.getAmount()));
+        }
+    }
+
+    private StockChange firstStockChange(Iterator<String> lines) {
+        boolean stock = false;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.equals("event:stock")) {
+                stock = true;
+            } else if (stock && line.startsWith("data:")) {
+                try {
+                    return objectMapper.readValue(line.substring("data:".length()), StockChange.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        throw new IllegalStateException("stream ended without a stock event");
+    }
+
     @Test
     public void testSaveBookCategory() throws Exception {
         given()
@@ -1,6 +1,10 @@
 package com.digitalfactory.bookstore;
 
+import com.digitalfactory.bookstore.domain.Book;
 import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.service.BookService;
 import com.digitalfactory.bookstore.web.AuthenticationRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.restassured.RestAssured;
@@ -13,12 +17,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 @AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
 @Slf4j
 public class IntegrationTestsWithCustomer {
 
@@ -28,6 +42,12 @@ public class IntegrationTestsWithCustomer {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookService bookService;
+
     private String token;
 
     @BeforeEach
@@ -54,6 +74,198 @@ public class IntegrationTestsWithCustomer {
                 .statusCode(HttpStatus.SC_OK);
     }
 
+    @Test
+    public void searchBooksByPrefixAndTypo() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-search?q=drakula")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("Dracula"));
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-search?q=raymond chand")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("The Big Sleep"));
+    }
+
+    @Test
+    public void searchRanksNameBeforeWriterAndFollowsUpdates() throws Exception {
+        Book book = bookService.save(Book.builder()
+                .name("Stoker")
+                .writer_name("Jane Doe")
+                .amount(BigDecimal.ONE)
+                .book_category(BookCategory.builder().id(1L).build())
+                .build());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-search?q=stoker")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("Stoker", "Dracula"));
+
+        bookService.delete(book.getId());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-search?q=stoker")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("content.name", contains("Dracula"));
+    }
+
+    @Test
+    public void autocompleteRanksByAvailability() throws Exception {
+        Book rides = bookService.save(Book.builder()
+                .name("Zorro Rides")
+                .writer_name("Johnston McCulley")
+                .amount(BigDecimal.ONE)
+                .book_category(BookCategory.builder().id(1L).build())
+                .build());
+        Book returns = bookService.save(Book.builder()
+                .name("Zorro Returns")
+                .writer_name("Johnston McCulley")
+                .amount(new BigDecimal(3))
+                .book_category(BookCategory.builder().id(1L).build())
+                .build());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-autocomplete?prefix=zorro r")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("text", contains("Zorro Returns", "Zorro Rides"));
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-autocomplete?prefix=mccul")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("text", contains("Johnston McCulley"))
+                .body("amount", contains(4));
+
+        Transaction item = Transaction.builder()
+                .book(Book.builder().id(returns.getId()).build())
+                .return_date(Timestamp.from(Instant.now()))
+                .build();
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(List.of(item, item, item))
+                .when()
+                .post("/v1/api/customer/request-books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK);
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-autocomplete?prefix=zorro")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("text", contains("Zorro Rides", "Zorro Returns"));
+
+        bookService.delete(rides.getId());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .when()
+                .get("/v1/api/book-autocomplete?prefix=zorro")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("text", contains("Zorro Returns"));
+    }
+
+    @Test
+    public void getAvailableBooksIsPagedAndCapped() throws Exception {
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .when()
+                .get("/v1/api/available-books?size=1000")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("size", equalTo(100));
+    }
+
+    @Test
+    public void borrowBasketReportsEachItem() throws Exception {
+        Book book = bookRepository.findById(3L).get();
+        book.setAmount(BigDecimal.ONE);
+        bookRepository.save(book);
+        Transaction item = Transaction.builder()
+                .book(Book.builder().id(3L).build())
+                .return_date(Timestamp.from(Instant.now()))
+                .build();
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(List.of(item, item))
+                .when()
+                .post("/v1/api/customer/request-books")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_OK)
+                .body("result", contains("Successful", "BookNotAvailable"));
+    }
+
+    @Test
+    public void returnIgnoresTheAmountInTheBody() throws Exception {
+        Book book = bookService.save(Book.builder()
+                .name("The Returned Letter")
+                .writer_name("Jane Doe")
+                .amount(BigDecimal.ZERO)
+                .book_category(BookCategory.builder().id(1L).build())
+                .build());
+
+        given()
+                .header("Authorization", "Bearer "+token)
+                .contentType(ContentType.JSON)
+                .body(Transaction.builder()
+                        .book(Book.builder().id(book.getId()).amount(BigDecimal.ZERO).build())
+                        .return_date(Timestamp.from(Instant.now()))
+                        .build())
+                .when()
+                .post("/v1/api/customer/return-book")
+
+                .then()
+                .assertThat()
+                .statusCode(HttpStatus.SC_CREATED);
+
+        assertEquals(0, BigDecimal.ONE.compareTo(bookRepository.findById(book.getId()).get().getAmount()));
+    }
+
     @Test
     public void testSaveBookCategory() throws Exception {
         given()
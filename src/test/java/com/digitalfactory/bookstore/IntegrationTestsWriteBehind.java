@@ -0,0 +1,349 @@
+package com.digitalfactory.bookstore;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.domain.User;
+import com.digitalfactory.bookstore.exceptions.BadRequestAlertException;
+import com.digitalfactory.bookstore.inventory.InventoryJournal;
+import com.digitalfactory.bookstore.inventory.InventoryLedger;
+import com.digitalfactory.bookstore.inventory.InventoryProperties;
+import com.digitalfactory.bookstore.inventory.JournalEntry;
+import com.digitalfactory.bookstore.repository.BookCategoryRepository;
+import com.digitalfactory.bookstore.repository.BookRepository;
+import com.digitalfactory.bookstore.repository.TransactionRepository;
+import com.digitalfactory.bookstore.repository.UserRepository;
+import com.digitalfactory.bookstore.service.BookService;
+import com.digitalfactory.bookstore.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "inventory.write-behind=true",
+        "inventory.journal=target/inventory-test.journal",
+        "inventory.dead-letter-journal=target/inventory-test-dead-letters.journal"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+@Slf4j
+public class IntegrationTestsWriteBehind {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS = 400;
+    private static final int STOCK = 150;
+    private static final long NO_USER = 999_999L;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    InventoryLedger inventoryLedger;
+
+    @Autowired
+    InventoryProperties inventoryProperties;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookCategoryRepository bookCategoryRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void concurrentBorrowNeverOversells() throws Exception {
+        Book book = newBook(STOCK);
+        AtomicInteger borrowed = new AtomicInteger();
+
+        long elapsed = runConcurrently(() -> {
+            try {
+                transactionService.borrowBook(Transaction.builder()
+                        .book(Book.builder().id(book.getId()).build())
+                        .return_date(Timestamp.from(Instant.now()))
+                        .build());
+                borrowed.incrementAndGet();
+            } catch (Exception e) {
+                // out of stock
+            }
+        });
+
+        log.info("write-behind: {} borrows of {} attempts, {} borrows/sec",
+                borrowed.get(), ATTEMPTS, perSecond(ATTEMPTS, elapsed));
+        assertEquals(STOCK, borrowed.get());
+        awaitAmount(book.getId(), 0);
+        assertEquals(STOCK, transactionsOf(book.getId()));
+    }
+
+    @Test
+    public void synchronousBaseline() throws Exception {
+        Book book = newBook(STOCK);
+        AtomicInteger borrowed = new AtomicInteger();
+
+        // the synchronous borrow path: one conditional update and one insert, committed per request
+        long elapsed = runConcurrently(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!bookService.reserveCopy(book.getId())) {
+                        throw new IllegalStateException("BookNotAvailable");
+                    }
+                    transactionRepository.save(Transaction.builder()
+                            .book(bookRepository.getReferenceById(book.getId()))
+                            .user(userRepository.findByUsername("user").get())
+                            .return_date(Timestamp.from(Instant.now()))
+                            .trx_date(Timestamp.from(Instant.now()))
+                            .build());
+                });
+                borrowed.incrementAndGet();
+            } catch (Exception e) {
+                // out of stock
+            }
+        });
+
+        log.info("synchronous: {} borrows of {} attempts, {} borrows/sec",
+                borrowed.get(), ATTEMPTS, perSecond(ATTEMPTS, elapsed));
+        assertEquals(STOCK, borrowed.get());
+    }
+
+    @Test
+    public void journalIsReplayedOnStart() throws Exception {
+        Book book = newBook(10);
+        Long userId = userRepository.findByUsername("user").get().getId();
+        inventoryLedger.borrow(book.getId(), userId, null).join();
+        awaitAmount(book.getId(), 9);
+
+        // as if the process died after journaling two more borrows, before writing them
+        inventoryLedger.stop();
+        long written = transactionRepository.findMaxJournalSequence();
+        long now = System.currentTimeMillis();
+        try (InventoryJournal journal = new InventoryJournal(inventoryProperties.getJournal())) {
+            journal.append(List.of(
+                    borrowEntry(written, book.getId(), userId, now),
+                    borrowEntry(written + 1, book.getId(), userId, now),
+                    borrowEntry(written + 2, book.getId(), userId, now)));
+        }
+        inventoryLedger.start();
+
+        // the entry already in the database is skipped
+        assertEquals(0, new BigDecimal(7).compareTo(amountOf(book.getId())));
+        assertEquals(3, transactionsOf(book.getId()));
+    }
+
+    @Test
+    public void tornRecordEndsTheJournal() throws Exception {
+        Path path = Path.of("target/torn-test.journal");
+        Files.deleteIfExists(path);
+        try (InventoryJournal journal = new InventoryJournal(path)) {
+            journal.append(List.of(borrowEntry(1, 1L, 1L, System.currentTimeMillis())));
+        }
+        // a whole record's length of garbage, as left by a crash mid-append, with no valid kind
+        byte[] torn = new byte[Long.BYTES + 1 + 5 * Long.BYTES + Integer.BYTES];
+        Arrays.fill(torn, (byte) 0xFF);
+        Files.write(path, torn, StandardOpenOption.APPEND);
+        try (InventoryJournal journal = new InventoryJournal(path)) {
+            assertEquals(1, journal.read().size());
+        }
+    }
+
+    @Test
+    public void entryThatCanNeverBeWrittenIsDeadLettered() throws Exception {
+        Book book = newBook(10);
+        Long userId = userRepository.findByUsername("user").get().getId();
+        Files.deleteIfExists(inventoryProperties.getDeadLetterJournal());
+
+        // no such user, so this transaction row can never be written; the borrow queued with it still is
+        CompletableFuture<Boolean> bad = inventoryLedger.borrow(book.getId(), NO_USER, null);
+        CompletableFuture<Boolean> good = inventoryLedger.borrow(book.getId(), userId, null);
+        assertTrue(bad.join());
+        assertTrue(good.join());
+        awaitAmount(book.getId(), 9);
+        assertEquals(1, transactionsOf(book.getId()));
+        assertTrue(inventoryLedger.isWriteBehind());
+        try (InventoryJournal deadLetters = new InventoryJournal(inventoryProperties.getDeadLetterJournal())) {
+            assertEquals(NO_USER, deadLetters.read().get(0).userId());
+        }
+
+        // the copy the dead letter took is back
+        for (int i = 0; i < 9; i++) {
+            assertTrue(inventoryLedger.borrow(book.getId(), userId, null).join());
+        }
+        assertFalse(inventoryLedger.borrow(book.getId(), userId, null).join());
+        awaitAmount(book.getId(), 0);
+    }
+
+    @Test
+    public void unknownUserIsRejectedBeforeJournaling() throws Exception {
+        Book book = newBook(10);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        try {
+            assertThrows(BadRequestAlertException.class, () -> transactionService.borrowBook(Transaction.builder()
+                    .book(Book.builder().id(book.getId()).build())
+                    .user(User.builder().id(NO_USER).build())
+                    .return_date(Timestamp.from(Instant.now()))
+                    .build()));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        assertEquals(0, new BigDecimal(10).compareTo(amountOf(book.getId())));
+    }
+
+    @Test
+    public void failingWritesTurnWriteBehindOffAndKeepTheirCopies() throws Exception {
+        Book book = newBook(1);
+        Long userId = userRepository.findByUsername("user").get().getId();
+        int writeAttempts = inventoryProperties.getWriteAttempts();
+        Duration retryBackoff = inventoryProperties.getRetryBackoff();
+        inventoryProperties.setWriteAttempts(2);
+        inventoryProperties.setRetryBackoff(Duration.ofMillis(10));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // holds the book row, so every write of the borrow times out waiting for it
+        Thread holder = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("select amount from book where id = ? for update", book.getId());
+            locked.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        try {
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            assertTrue(inventoryLedger.borrow(book.getId(), userId, null).join());
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (inventoryLedger.isWriteBehind() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(inventoryLedger.isWriteBehind());
+            release.countDown();
+            holder.join();
+
+            // taken no more, rather than left waiting for a flusher that is gone
+            CompletableFuture<Boolean> rejected = inventoryLedger.giveBack(book.getId(), userId, null, null);
+            assertThrows(CompletionException.class, rejected::join);
+            // the database still counts the copy, the journaled borrow has it
+            assertEquals(0, BigDecimal.ONE.compareTo(amountOf(book.getId())));
+            Boolean reserved = transactionTemplate.execute(status -> bookService.reserveCopy(book.getId()));
+            assertFalse(reserved);
+        } finally {
+            release.countDown();
+            holder.join();
+            inventoryProperties.setWriteAttempts(writeAttempts);
+            inventoryProperties.setRetryBackoff(retryBackoff);
+            inventoryLedger.stop();
+            inventoryLedger.start();
+        }
+        assertTrue(inventoryLedger.isWriteBehind());
+        assertEquals(0, BigDecimal.ZERO.compareTo(amountOf(book.getId())));
+        assertEquals(1, transactionsOf(book.getId()));
+    }
+
+    private static JournalEntry borrowEntry(long sequence, Long bookId, Long userId, long now) {
+        return new JournalEntry(sequence, JournalEntry.Kind.BORROW, bookId, userId, JournalEntry.NO_DATE, now,
+                JournalEntry.NO_DATE);
+    }
+
+    private Book newBook(int stock) {
+        return bookRepository.save(Book.builder()
+                .book_category(bookCategoryRepository.findById(1L).get())
+                .name("Burst")
+                .writer_name("Burst")
+                .amount(new BigDecimal(stock))
+                .build());
+    }
+
+    private BigDecimal amountOf(Long bookId) {
+        return jdbcTemplate.queryForObject("select amount from book where id = ?", BigDecimal.class, bookId);
+    }
+
+    private long transactionsOf(Long bookId) {
+        return jdbcTemplate.queryForObject("select count(*) from transaction where book_id = ?", Long.class, bookId);
+    }
+
+    private void awaitAmount(Long bookId, int amount) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (new BigDecimal(amount).compareTo(amountOf(bookId)) != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, new BigDecimal(amount).compareTo(amountOf(bookId)));
+    }
+
+    private long runConcurrently(Runnable borrow) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger remaining = new AtomicInteger(ATTEMPTS);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Callable<Void> worker = () -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken("user", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+                start.await();
+                while (remaining.getAndDecrement() > 0) {
+                    borrow.run();
+                }
+                SecurityContextHolder.clearContext();
+                return null;
+            };
+            futures.add(executor.submit(worker));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return count * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
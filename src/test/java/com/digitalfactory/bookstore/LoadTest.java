@@ -0,0 +1,216 @@
+package com.digitalfactory.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Drives the running application over HTTP and measures throughput, errors and latency per endpoint. Either keeps a
+ * fixed number of clients busy, each sending its next request as soon as the previous one is answered, or sends at a
+ * fixed arrival rate whatever the response times, which is what a release is gated on.
+ */
+final class LoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final String baseUrl;
+
+    LoadTest(int port) {
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+    /**
+     * Log in through {@code /auth/login}.
+     *
+     * @return the token to send the requests of the user with.
+     */
+    String login(String username, String password) throws IOException, InterruptedException {
+        String body = JSON.writeValueAsString(Map.of("username", username, "password", password));
+        HttpResponse<String> response = client.send(request(null, "/auth/login")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("login of " + username + " failed with " + response.statusCode());
+        }
+        return JSON.readTree(response.body()).get("token").asText();
+    }
+
+    HttpRequest get(String token, String path) {
+        return request(token, path).GET().build();
+    }
+
+    HttpRequest post(String token, String path, String json) {
+        return request(token, path).POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest.Builder request(String token, String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json");
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+
+    /**
+     * Send the requests from a fixed number of clients, first one round untimed so every client has its connection
+     * open.
+     *
+     * @param clients  the number of concurrent clients.
+     * @param requests the number of timed requests.
+     * @param request  the i-th request.
+     * @return the measurements of the timed requests.
+     */
+    Endpoint run(int clients, int requests, IntFunction<HttpRequest> request) throws InterruptedException {
+        send(clients, clients, request);
+        return send(clients, requests, request);
+    }
+
+    private Endpoint send(int clients, int requests, IntFunction<HttpRequest> request) throws InterruptedException {
+        Semaphore idleClients = new Semaphore(clients);
+        Stats stats = new Stats();
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            idleClients.acquire();
+            long start = System.nanoTime();
+            client.sendAsync(request.apply(i), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        stats.record(start, error == null ? response.statusCode() : 0);
+                        idleClients.release();
+                    });
+        }
+        idleClients.acquire(clients);
+        return stats.toEndpoint("all", System.nanoTime() - begin);
+    }
+
+    /**
+     * Send one call every {@code 1 / perSecond} seconds, without waiting for the answers. Latency is measured from when
+     * a call was due rather than when it went out, so a stalled server shows up in the percentiles instead of slowing
+     * the load down.
+     *
+     * @param perSecond the arrival rate.
+     * @param warmUp    how long to send before measuring, to open connections and warm the caches and the JIT.
+     * @param duration  how long to measure for.
+     * @param next      the next call to make, asked for on one thread.
+     * @return the measurements per endpoint.
+     */
+    Report runAtRate(int perSecond, Duration warmUp, Duration duration, Supplier<Call> next) throws InterruptedException {
+        send(perSecond, warmUp, next, new ConcurrentHashMap<>());
+        Map<String, Stats> stats = new ConcurrentHashMap<>();
+        long elapsed = send(perSecond, duration, next, stats);
+        List<Endpoint> endpoints = stats.entrySet().stream()
+                .map(e -> e.getValue().toEndpoint(e.getKey(), elapsed))
+                .sorted((a, b) -> a.endpoint().compareTo(b.endpoint()))
+                .collect(Collectors.toList());
+        return new Report(perSecond, duration.toSeconds(), endpoints);
+    }
+
+    private long send(int perSecond, Duration duration, Supplier<Call> next, Map<String, Stats> stats)
+            throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / perSecond;
+        long calls = duration.toNanos() / interval;
+        Phaser inFlight = new Phaser(1);
+        long begin = System.nanoTime();
+        for (long i = 0; i < calls; i++) {
+            long due = begin + i * interval;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Call call = next.get();
+            Stats endpoint = stats.computeIfAbsent(call.endpoint(), k -> new Stats());
+            inFlight.register();
+            client.sendAsync(call.request(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        int status = error == null ? response.statusCode() : 0;
+                        endpoint.record(due, status);
+                        if (status / 100 == 2 && call.onSuccess() != null) {
+                            call.onSuccess().run();
+                        }
+                        inFlight.arriveAndDeregister();
+                    });
+        }
+        inFlight.awaitAdvanceInterruptibly(inFlight.arrive());
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * One request of a mix.
+     *
+     * @param endpoint  what to report the request under.
+     * @param request   the request.
+     * @param onSuccess run when the request was answered with 2xx, may be null.
+     */
+    record Call(String endpoint, HttpRequest request, Runnable onSuccess) {
+    }
+
+    private static final class Stats {
+
+        private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(long start, int status) {
+            latencies.recordValue(Math.min(System.nanoTime() - start, latencies.getHighestTrackableValue()));
+            if (status / 100 != 2 && status != 304) {
+                errors.incrementAndGet();
+            }
+        }
+
+        Endpoint toEndpoint(String name, long elapsedNanos) {
+            long requests = latencies.getTotalCount();
+            return new Endpoint(name, requests, errors.get(), requests * 1e9 / Math.max(elapsedNanos, 1),
+                    millis(0.5), millis(0.9), millis(0.99), millis(0.999), latencies.getMaxValue() / 1e6);
+        }
+
+        private double millis(double quantile) {
+            return latencies.getValueAtPercentile(quantile * 100) / 1e6;
+        }
+    }
+
+    record Endpoint(String endpoint, long requests, long errors, double perSecond,
+                    double p50Millis, double p90Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d requests, %d failed, %.0f req/s, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms",
+                    endpoint, requests, errors, perSecond, p50Millis, p90Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+
+    /**
+     * The outcome of a fixed-rate run, written as JSON for release gating.
+     */
+    record Report(int targetPerSecond, long durationSeconds, List<Endpoint> endpoints) {
+
+        void write(Path path) throws IOException {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            JSON.writeValue(path.toFile(), this);
+        }
+    }
+}
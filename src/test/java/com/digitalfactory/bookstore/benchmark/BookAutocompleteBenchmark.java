@@ -0,0 +1,92 @@
+package com.digitalfactory.bookstore.benchmark;
+
+import com.digitalfactory.bookstore.search.BookAutocomplete;
+import com.digitalfactory.bookstore.service.dto.BookSuggestion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suggestion latency and heap taken by the trie over a synthetic catalog, the heap is printed once it is built.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmarks=BookAutocompleteBenchmark}, results in target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BookAutocompleteBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ten", "dor", "vel", "sha", "qui", "bel",
+            "ron", "tis", "mar", "gen", "ul", "pha", "zen", "cor", "lin", "ast"};
+
+    @Param({"1000000"})
+    public int books;
+
+    private BookAutocomplete autocomplete;
+
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        autocomplete = new BookAutocomplete(null, null);
+        Random random = new Random(42);
+        String[] writers = new String[books / 10];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = word(random) + " " + word(random);
+        }
+        for (id = 1; id <= books; id++) {
+            autocomplete.put(id, word(random) + " " + word(random) + " " + word(random),
+                    writers[random.nextInt(writers.length)], BigDecimal.valueOf(random.nextInt(20)));
+        }
+        long built = System.nanoTime() - start;
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%n%d books built in %d ms, about %d MB of heap%n", books, built / 1_000_000,
+                (after - before) / (1024 * 1024));
+    }
+
+    private static String word(Random random) {
+        int syllables = 2 + random.nextInt(3);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public List<BookSuggestion> oneLetter() {
+        return autocomplete.suggest("k", BookAutocomplete.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<BookSuggestion> oneWord() {
+        return autocomplete.suggest("kalomi", BookAutocomplete.MAX_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<BookSuggestion> twoWords() {
+        return autocomplete.suggest("kalomi ten", BookAutocomplete.MAX_SUGGESTIONS);
+    }
+}
@@ -0,0 +1,77 @@
+package com.digitalfactory.bookstore.benchmark;
+
+import com.digitalfactory.bookstore.search.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency over a synthetic catalog of made-up titles and writers.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmarks=BookSearchBenchmark}, results in target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BookSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ten", "dor", "vel", "sha", "qui", "bel",
+            "ron", "tis", "mar", "gen", "ul", "pha", "zen", "cor", "lin", "ast"};
+
+    @Param({"1000000"})
+    public int books;
+
+    private BookSearchIndex index;
+
+    private final PageRequest firstPage = PageRequest.of(0, 20);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = new BookSearchIndex(null, null);
+        Random random = new Random(42);
+        for (long id = 1; id <= books; id++) {
+            index.put(id, word(random) + " " + word(random) + " " + word(random), word(random) + " " + word(random));
+        }
+    }
+
+    private static String word(Random random) {
+        int syllables = 2 + random.nextInt(3);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public Page<Long> exactTwoWords() {
+        return index.search("kalomi tendor", firstPage);
+    }
+
+    @Benchmark
+    public Page<Long> prefix() {
+        return index.search("velsha", firstPage);
+    }
+
+    @Benchmark
+    public Page<Long> typo() {
+        return index.search("belronttis", firstPage);
+    }
+}
@@ -0,0 +1,93 @@
+package com.digitalfactory.bookstore.benchmark;
+
+import com.digitalfactory.bookstore.domain.Book;
+import com.digitalfactory.bookstore.domain.BookCategory;
+import com.digitalfactory.bookstore.domain.Transaction;
+import com.digitalfactory.bookstore.domain.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Writing response bodies of books and transactions with the mapper settings of application.yml.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmarks=JsonSerializationBenchmark}, results in target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+
+    private List<Book> books;
+
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .indentOutput(true)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .serializationInclusion(JsonInclude.Include.NON_EMPTY)
+                .build();
+        BookCategory category = BookCategory.builder().id(1L).name("novel").version(0L).build();
+        User user = User.builder().id(1L).username("user").type("CU").build();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        books = IntStream.range(0, size)
+                .mapToObj(i -> Book.builder()
+                        .id((long) i + 1)
+                        .name("Title " + i)
+                        .writer_name("Writer " + i % 97)
+                        .amount(BigDecimal.valueOf(i % 7))
+                        .version(0L)
+                        .book_category(category)
+                        .build())
+                .collect(Collectors.toList());
+        transactions = books.stream()
+                .map(book -> Transaction.builder()
+                        .id(book.getId())
+                        .user(user)
+                        .book(book)
+                        .trx_date(now)
+                        .return_date(now)
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] books() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] transactions() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transactions);
+    }
+}
@@ -0,0 +1,101 @@
+package com.digitalfactory.bookstore.benchmark;
+
+import com.digitalfactory.bookstore.security.JwtProperties;
+import com.digitalfactory.bookstore.security.JwtTokenAuthenticationFilter;
+import com.digitalfactory.bookstore.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import jakarta.servlet.FilterChain;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request with a bearer token.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmarks=JwtFilterBenchmark}, results in target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    private JwtTokenAuthenticationFilter filter;
+
+    private SecretKey secretKey;
+
+    private String token;
+
+    private final FilterChain chain = (req, res) -> {
+    };
+
+    @Setup
+    public void setup() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtTokenProvider = new JwtTokenProvider(jwtProperties, new SimpleMeterRegistry());
+        jwtTokenProvider.init();
+        filter = new JwtTokenAuthenticationFilter(jwtTokenProvider);
+        var secret = Base64.getEncoder().encodeToString(jwtProperties.getSecretKey().getBytes());
+        secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        token = jwtTokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN")));
+    }
+
+    /**
+     * The previous filter path: a parser built and the signature verified once to validate and once more to read
+     * the claims.
+     */
+    @Benchmark
+    public Authentication doubleParse() {
+        Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token).getBody();
+        return new UsernamePasswordAuthenticationToken(claims.getSubject(), token,
+                AuthorityUtils.commaSeparatedStringToAuthorityList(claims.get("roles").toString()));
+    }
+
+    /**
+     * One verification with the shared parser, what a token not seen before costs.
+     */
+    @Benchmark
+    public Authentication singleParse() {
+        return jwtTokenProvider.getAuthentication(token);
+    }
+
+    /**
+     * The filter with the token already in the verified cache.
+     */
+    @Benchmark
+    public Object filterCached() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", JwtTokenAuthenticationFilter.HEADER_PREFIX + token);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        Object principal = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+}
@@ -0,0 +1,65 @@
+package com.digitalfactory.bookstore.benchmark;
+
+import com.digitalfactory.bookstore.service.enums.UserType;
+import com.digitalfactory.bookstore.utils.SecurityUtils;
+import com.digitalfactory.bookstore.web.response.HeaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The small helpers called on every request: user type lookup, current login and response alert headers.
+ *
+ * Run with {@code mvn -Pbenchmarks verify -Dbenchmarks=RequestHelpersBenchmark}, results in target/jmh-result.json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestHelpersBenchmark {
+
+    @Setup
+    public void setup() {
+        // the security context is thread bound, set on the thread running the benchmark
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("user", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public UserType getUserType() {
+        // the last constant, the longest scan
+        return UserType.getUserType("AD");
+    }
+
+    @Benchmark
+    public Optional<String> getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin();
+    }
+
+    @Benchmark
+    public HttpHeaders createEntityDeletionAlert() {
+        return HeaderUtil.createEntityDeletionAlert("BookStore", true, "book", "42");
+    }
+}
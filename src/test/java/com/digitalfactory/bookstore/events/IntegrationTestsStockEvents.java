@@ -0,0 +1,114 @@
+package com.digitalfactory.bookstore.events;
+
+import com.digitalfactory.bookstore.DataInitializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "stock-events.coalesce-interval=50ms",
+        "stock-events.sender-threads=" + IntegrationTestsStockEvents.SENDERS,
+        "stock-events.sender-queue-capacity=" + IntegrationTestsStockEvents.QUEUE,
+        "stock-events.send-timeout=500ms"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles(DataInitializer.PROFILE)
+public class IntegrationTestsStockEvents {
+
+    static final int SENDERS = 2;
+
+    static final int QUEUE = 1;
+
+    @Autowired
+    StockChangeBroadcaster stockChangeBroadcaster;
+
+    @Test
+    public void stalledSubscriberIsDroppedAndTheOthersKeepReceiving() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+        try {
+            // blocked in its first write, like a client that stopped reading
+            stockChangeBroadcaster.subscribe(null, new StalledEmitter(release, new AtomicInteger()));
+            stockChangeBroadcaster.subscribe(null, new SseEmitter(0L) {
+                @Override
+                public void send(SseEventBuilder event) {
+                    event.build().forEach(part -> received.add(part.getData().toString()));
+                }
+            });
+
+            stockChangeBroadcaster.changed(List.of(1L));
+            String part;
+            boolean stock = false;
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!stock && (part = received.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                stock = part.contains("event:" + StockChangeBroadcaster.STOCK_EVENT);
+            }
+            assertTrue(stock);
+
+            deadline = System.nanoTime() + 5_000_000_000L;
+            while (stockChangeBroadcaster.subscriberCount() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, stockChangeBroadcaster.subscriberCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void subscriberIsDroppedWhenNoSenderCanTakeIt() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ended = new AtomicInteger();
+        try {
+            // every sender stalled and the queue full, the last one cannot wait anywhere
+            for (int i = 0; i < SENDERS + QUEUE + 1; i++) {
+                stockChangeBroadcaster.subscribe(null, new StalledEmitter(release, ended));
+            }
+            assertTrue(ended.get() > 0);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static final class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch release;
+
+        private final AtomicInteger ended;
+
+        StalledEmitter(CountDownLatch release, AtomicInteger ended) {
+            super(0L);
+            this.release = release;
+            this.ended = ended;
+        }
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Broken pipe");
+        }
+
+        @Override
+        public synchronized void complete() {
+            ended.incrementAndGet();
+            super.complete();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+insert into book_category (id, name, version) values (1, 'novel', 0), (2, 'horror', 0);
+insert into book (id, amount, book_category_id, name, version, writer_name) values
+    (1, 3, 1, 'Dune', 0, 'Frank Herbert'),
+    (2, 0, 1, 'Emma', 2, 'Jane Austen'),
+    (3, 1, 2, 'It', 0, 'Stephen King'),
+    (4, 5, 2, 'Carrie', 1, 'Stephen King');
@@ -0,0 +1,14 @@
+-- the tables as the main application generates them, for the read node tests
+create table book_category (
+    id bigint not null primary key,
+    name varchar(255) not null,
+    version bigint
+);
+create table book (
+    id bigint not null primary key,
+    amount numeric(38,2) not null,
+    book_category_id bigint not null references book_category (id),
+    name varchar(255) not null,
+    version bigint,
+    writer_name varchar(255) not null
+);